@@ -11,30 +11,54 @@
 package org.dpppt.android.calibration.logs;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.annotation.NonNull;
+import androidx.core.util.Consumer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import org.dpppt.android.sdk.internal.logger.LogEntry;
+import org.dpppt.android.sdk.internal.logger.LogFilter;
 import org.dpppt.android.sdk.internal.logger.LogLevel;
+import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.calibration.R;
 
+/**
+ * Shows a window of at most {@link #MAX_LOADED_LOGS} log entries. Pages are loaded in the background when the list is
+ * scrolled close to either end of the window, and the entries at the other end are dropped.
+ */
 class LogsAdapter extends RecyclerView.Adapter<LogsViewHolder> {
 
+	private static final int PAGE_SIZE = 200;
+	private static final int MAX_LOADED_LOGS = 5 * PAGE_SIZE;
+	private static final int PREFETCH_DISTANCE = 50;
+
+	private static final Executor LOAD_EXECUTOR = Executors.newSingleThreadExecutor();
+
 	private final LayoutInflater inflater;
 	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.ENGLISH);
+	private final Handler handler = new Handler(Looper.getMainLooper());
 
 	private final List<LogEntry> logs = new ArrayList<>();
-	private List<LogEntry> filteredLogs = new ArrayList<>();
+	private boolean hasOlderLogs = false;
+	private boolean hasNewerLogs = false;
+	private boolean loading = false;
+	private int generation = 0;
 
 	private LogLevel filterLogLevel = LogLevel.DEBUG;
 	private final Set<String> filterTags = new HashSet<>();
+	private LogFilter filter = LogFilter.ALL;
+	private String searchQuery = "";
 
 	public LogsAdapter(Context context) {
 		inflater = LayoutInflater.from(context);
@@ -48,7 +72,7 @@ class LogsAdapter extends RecyclerView.Adapter<LogsViewHolder> {
 
 	@Override
 	public void onBindViewHolder(@NonNull LogsViewHolder holder, int position) {
-		LogEntry logEntry = filteredLogs.get(position);
+		LogEntry logEntry = logs.get(position);
 		holder.timeView.setText(dateFormat.format(new Date(logEntry.getTime())));
 		holder.levelView.setText(logEntry.getLevel().getKey());
 		holder.tagView.setText(logEntry.getTag());
@@ -70,58 +94,155 @@ class LogsAdapter extends RecyclerView.Adapter<LogsViewHolder> {
 				break;
 		}
 		holder.itemView.setBackgroundColor(color);
+
+		if (position < PREFETCH_DISTANCE && hasOlderLogs) {
+			loadOlderLogs();
+		} else if (position >= logs.size() - PREFETCH_DISTANCE && hasNewerLogs) {
+			loadNewerLogs();
+		}
 	}
 
 	@Override
 	public int getItemCount() {
-		return filteredLogs.size();
+		return logs.size();
 	}
 
-	public long getLastLogTime() {
-		if (logs.isEmpty()) {
-			return -1;
-		} else {
-			return logs.get(logs.size() - 1).getTime();
+	/**
+	 * Appends entries logged since the last call, unless the window was scrolled away from the newest entries or search
+	 * results are shown.
+	 */
+	public void refresh() {
+		if (!hasNewerLogs && searchQuery.isEmpty()) {
+			loadNewerLogs();
 		}
 	}
 
-	public void appendLogs(List<LogEntry> logEntries) {
-		logs.addAll(logEntries);
-
-		int startIndex = filteredLogs.size();
-		List<LogEntry> filteredLogsToAdd = getFilteredLogs(logEntries);
-		filteredLogs.addAll(filteredLogsToAdd);
-
-		notifyItemRangeInserted(startIndex, filteredLogsToAdd.size());
-	}
-
 	public void setFilterLogLevel(LogLevel logLevel) {
 		filterLogLevel = logLevel;
-		invalidateFilteredList();
+		invalidateFilter();
 	}
 
 	public void setFilterTags(List<String> tags) {
 		filterTags.clear();
 		filterTags.addAll(tags);
 		filterTags.remove("");
-		invalidateFilteredList();
+		invalidateFilter();
+	}
+
+	/**
+	 * Shows the newest entries matching the query instead of the paged log, until the query is empty again.
+	 */
+	public void setSearchQuery(String query) {
+		searchQuery = query.trim();
+		invalidateFilter();
 	}
 
-	private void invalidateFilteredList() {
-		filteredLogs = getFilteredLogs(logs);
+	private void invalidateFilter() {
+		filter = new LogFilter(filterLogLevel, filterTags);
+		generation++;
+		loading = false;
+		hasOlderLogs = false;
+		hasNewerLogs = false;
+		logs.clear();
 		notifyDataSetChanged();
+		if (searchQuery.isEmpty()) {
+			loadNewerLogs();
+		} else {
+			loadSearchResults();
+		}
 	}
 
-	private List<LogEntry> getFilteredLogs(List<LogEntry> logs) {
-		List<LogEntry> filteredLogs = new ArrayList<>();
-		for (LogEntry log : logs) {
-			if (log.getLevel().getImportance() >= filterLogLevel.getImportance()) {
-				if (filterTags.isEmpty() || filterTags.contains(log.getTag())) {
-					filteredLogs.add(log);
-				}
+	private void loadSearchResults() {
+		String query = searchQuery;
+		LogFilter filter = this.filter;
+		load(() -> Logger.searchLogs(query, filter, MAX_LOADED_LOGS), page -> {
+			logs.addAll(page);
+			notifyItemRangeInserted(0, page.size());
+		});
+	}
+
+	private void loadOlderLogs() {
+		if (loading) {
+			return;
+		}
+		LogEntry first = logs.get(0);
+		LogFilter filter = this.filter;
+		load(() -> Logger.getLogsBefore(filter, first, PAGE_SIZE), page -> {
+			hasOlderLogs = page.size() == PAGE_SIZE;
+			logs.addAll(0, page);
+			notifyItemRangeInserted(0, page.size());
+
+			int excess = logs.size() - MAX_LOADED_LOGS;
+			if (excess > 0) {
+				logs.subList(logs.size() - excess, logs.size()).clear();
+				notifyItemRangeRemoved(logs.size(), excess);
+				hasNewerLogs = true;
 			}
+		});
+	}
+
+	private void loadNewerLogs() {
+		if (loading) {
+			return;
 		}
-		return filteredLogs;
+		LogEntry last = logs.isEmpty() ? null : logs.get(logs.size() - 1);
+		LogFilter filter = this.filter;
+		load(() -> last == null ? Logger.getLogsBefore(filter, null, PAGE_SIZE) : Logger.getLogsAfter(filter, last, PAGE_SIZE),
+				page -> {
+					if (last == null) {
+						hasOlderLogs = page.size() == PAGE_SIZE;
+					} else {
+						hasNewerLogs = page.size() == PAGE_SIZE;
+					}
+					int startIndex = logs.size();
+					logs.addAll(page);
+					notifyItemRangeInserted(startIndex, page.size());
+
+					int excess = logs.size() - MAX_LOADED_LOGS;
+					if (excess > 0) {
+						logs.subList(0, excess).clear();
+						notifyItemRangeRemoved(0, excess);
+						hasOlderLogs = true;
+					}
+				});
+	}
+
+	/**
+	 * Runs the query in the background and hands the page to the main thread, unless the filter changed in between. If the
+	 * query fails, the error is shown and the page can be requested again.
+	 */
+	private void load(PageQuery query, Consumer<List<LogEntry>> onLoaded) {
+		loading = true;
+		int loadGeneration = generation;
+		LOAD_EXECUTOR.execute(() -> {
+			List<LogEntry> page;
+			try {
+				page = query.load();
+			} catch (RuntimeException e) {
+				handler.post(() -> {
+					if (loadGeneration != generation) {
+						return;
+					}
+					loading = false;
+					Toast.makeText(inflater.getContext(), "Loading logs failed: " + e.getLocalizedMessage(), Toast.LENGTH_LONG)
+							.show();
+				});
+				return;
+			}
+			handler.post(() -> {
+				if (loadGeneration != generation) {
+					return;
+				}
+				loading = false;
+				onLoaded.accept(page);
+			});
+		});
+	}
+
+	private interface PageQuery {
+
+		List<LogEntry> load();
+
 	}
 
 }
@@ -15,6 +15,7 @@ import android.os.Handler;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.MultiAutoCompleteTextView;
 import android.widget.Spinner;
 import androidx.annotation.NonNull;
@@ -27,7 +28,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import org.dpppt.android.sdk.internal.logger.LogEntry;
 import org.dpppt.android.sdk.internal.logger.LogLevel;
 import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.calibration.R;
@@ -35,12 +35,17 @@ import org.dpppt.android.calibration.util.OnTextChangedListener;
 
 public class LogsFragment extends Fragment {
 
+	private static final long SEARCH_DELAY = 300;
+
 	private RecyclerView logsList;
 	private LinearLayoutManager layoutManager;
 	private LogsAdapter logsAdapter;
 
 	private Handler handler = new Handler();
+
 	private Runnable updateLogsRunnable;
+	private Runnable searchRunnable;
+	private boolean followNewLogs = true;
 
 	private final List<LogLevel> logLevels = Arrays.asList(LogLevel.DEBUG, LogLevel.INFO, LogLevel.WARNING, LogLevel.ERROR);
 
@@ -59,6 +64,14 @@ public class LogsFragment extends Fragment {
 		logsList = view.findViewById(R.id.logs_list);
 		layoutManager = (LinearLayoutManager) logsList.getLayoutManager();
 		logsAdapter = new LogsAdapter(getContext());
+		logsAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+			@Override
+			public void onItemRangeInserted(int positionStart, int itemCount) {
+				if (followNewLogs && itemCount > 0 && positionStart + itemCount == logsAdapter.getItemCount()) {
+					logsList.smoothScrollToPosition(logsAdapter.getItemCount() - 1);
+				}
+			}
+		});
 		logsList.setAdapter(logsAdapter);
 
 		Spinner spinner = view.findViewById(R.id.logs_filter_level);
@@ -95,6 +108,16 @@ public class LogsFragment extends Fragment {
 			}
 		});
 
+		EditText searchInput = view.findViewById(R.id.logs_search);
+		searchInput.addTextChangedListener(new OnTextChangedListener() {
+			@Override
+			public void onTextChanged(CharSequence s, int start, int before, int count) {
+				handler.removeCallbacks(searchRunnable);
+				handler.postDelayed(searchRunnable, SEARCH_DELAY);
+			}
+		});
+		searchRunnable = () -> logsAdapter.setSearchQuery(searchInput.getText().toString());
+
 		view.findViewById(R.id.logs_scrolltobottom).setOnClickListener(v -> {
 			if (logsAdapter.getItemCount() > 0) {
 				logsList.smoothScrollToPosition(logsAdapter.getItemCount() - 1);
@@ -107,14 +130,8 @@ public class LogsFragment extends Fragment {
 		super.onStart();
 
 		updateLogsRunnable = () -> {
-			boolean isAtBottom = layoutManager.findLastCompletelyVisibleItemPosition() == logsAdapter.getItemCount() - 1;
-
-			List<LogEntry> logs = Logger.getLogs(logsAdapter.getLastLogTime() + 1);
-			logsAdapter.appendLogs(logs);
-
-			if (isAtBottom && logsAdapter.getItemCount() > 0) {
-				logsList.smoothScrollToPosition(logsAdapter.getItemCount() - 1);
-			}
+			followNewLogs = layoutManager.findLastCompletelyVisibleItemPosition() == logsAdapter.getItemCount() - 1;
+			logsAdapter.refresh();
 
 			handler.postDelayed(updateLogsRunnable, 2 * 1000L);
 		};
@@ -126,6 +143,7 @@ public class LogsFragment extends Fragment {
 		super.onStop();
 
 		handler.removeCallbacks(updateLogsRunnable);
+		handler.removeCallbacks(searchRunnable);
 	}
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.dpppt.android.sdk.internal.storage.models.KeyBundleValidators;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class AppConfigManagerEditorTest {
+
+	private AppConfigManager appConfigManager;
+
+	@Before
+	public void setup() {
+		Context context = InstrumentationRegistry.getInstrumentation().getContext();
+		appConfigManager = AppConfigManager.getInstance(context);
+		appConfigManager.clearPreferences();
+	}
+
+	@Test
+	public void testChangesAreOnlyVisibleAfterCommit() {
+		AppConfigManager.Editor editor = appConfigManager.edit()
+				.lastSyncCallTime(1000)
+				.lastKeyBundleTag("1000")
+				.lastSyncDate(2000);
+		assertEquals(0, appConfigManager.getLastSyncDate());
+		assertNull(appConfigManager.getLastKeyBundleTag());
+
+		assertTrue(editor.commit());
+		assertEquals(1000, appConfigManager.getLastSynCallTime());
+		assertEquals("1000", appConfigManager.getLastKeyBundleTag());
+		assertEquals(2000, appConfigManager.getLastSyncDate());
+	}
+
+	@Test
+	public void testInvalidThresholdsDiscardTheBatch() {
+		try {
+			appConfigManager.edit()
+					.attenuationFactorLow(0.1f)
+					.attenuationThresholds(70, 60)
+					.commit();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(1.0f, appConfigManager.getAttenuationFactorLow(), 0);
+		assertEquals(55, appConfigManager.getAttenuationThresholdLow());
+	}
+
+	@Test
+	public void testSnapshotIsReplacedOnWrite() {
+		AppConfigManager.Snapshot before = appConfigManager.getSnapshot();
+		appConfigManager.setMinDurationForExposure(20);
+		AppConfigManager.Snapshot after = appConfigManager.getSnapshot();
+
+		assertEquals(15, before.minDurationForExposure);
+		assertEquals(20, after.minDurationForExposure);
+		assertSame(before.applicationInfo, after.applicationInfo);
+	}
+
+	@Test
+	public void testDownloadStateIsInSnapshot() {
+		KeyBundleValidators validators = new KeyBundleValidators("1000", "2000", "\"etag\"", null);
+		appConfigManager.edit()
+				.lastKeyBundleTag("2000")
+				.keyBundleValidators(validators)
+				.commit();
+		AppConfigManager.Snapshot snapshot = appConfigManager.getSnapshot();
+		assertEquals("\"etag\"", snapshot.keyBundleValidators.getEtag());
+		assertSame(snapshot.keyBundleValidators, appConfigManager.getKeyBundleValidators());
+		assertNull(snapshot.partialKeyFileDownload);
+
+		appConfigManager.setMinDurationForExposure(20);
+		assertSame(snapshot.keyBundleValidators, appConfigManager.getSnapshot().keyBundleValidators);
+
+		appConfigManager.edit().keyBundleValidators(null).commit();
+		assertNull(appConfigManager.getKeyBundleValidators());
+	}
+
+}
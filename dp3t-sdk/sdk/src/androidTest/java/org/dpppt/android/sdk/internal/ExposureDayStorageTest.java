@@ -14,9 +14,11 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import org.dpppt.android.sdk.DP3T;
 import org.dpppt.android.sdk.internal.storage.ExposureDayStorage;
+import org.dpppt.android.sdk.internal.storage.models.MatchingState;
 import org.dpppt.android.sdk.models.ApplicationInfo;
 import org.dpppt.android.sdk.models.DayDate;
 import org.dpppt.android.sdk.models.ExposureDay;
@@ -25,6 +27,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class ExposureDayStorageTest {
@@ -129,4 +132,26 @@ public class ExposureDayStorageTest {
 		assertEquals(1, eds.getExposureDays().size());
 	}
 
+	@Test
+	public void testMatchingStateStoredWithExposureDays() {
+		ExposureDayStorage eds = ExposureDayStorage.getInstance(context);
+		eds.clear();
+		long today = new DayDate().getStartOfDayTimestamp();
+		MatchingState matchingState = new MatchingState("signature");
+		matchingState.getDay(today).getRiskScorerState(3)[1] = 600;
+		matchingState.getDay(today).setWindowCount("fingerprint", 2);
+
+		eds.addExposureDays(context, Collections.emptyList(), matchingState);
+		assertEquals(0, eds.getExposureDays().size());
+
+		MatchingState storedState = eds.getMatchingState("signature");
+		assertEquals(1, storedState.getDays().size());
+		assertEquals(600, storedState.getDay(today).getRiskScorerState(3)[1], 0);
+		assertEquals(2, storedState.getDay(today).getWindowCount("fingerprint"));
+		assertTrue(eds.getMatchingState("other signature").getDays().isEmpty());
+
+		eds.clear();
+		assertTrue(eds.getMatchingState("signature").getDays().isEmpty());
+	}
+
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.dpppt.android.sdk.backend.SignatureException;
+import org.dpppt.android.sdk.internal.backend.BackendBucketRepository;
+import org.dpppt.android.sdk.internal.backend.ProxyConfig;
+import org.dpppt.android.sdk.internal.logger.LogLevel;
+import org.dpppt.android.sdk.internal.logger.Logger;
+import org.dpppt.android.sdk.internal.util.Base64Util;
+import org.dpppt.android.sdk.util.SignatureUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.Okio;
+
+import static org.dpppt.android.sdk.internal.SyncWorker.KEY_BUNDLE_TAG_HEADER;
+import static org.dpppt.android.sdk.util.SignatureUtil.JWS_CLAIM_CONTENT_HASH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class KeyFileDownloaderTest {
+
+	private static final String ETAG = "\"bundle-etag\"";
+
+	Context context;
+	MockWebServer server;
+	KeyPair keyPair;
+	KeyFileDownloader keyFileDownloader;
+	byte[] content;
+
+	@Before
+	public void setup() throws Exception {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+
+		Logger.init(context, LogLevel.DEBUG);
+
+		ProxyConfig.DISABLE_SYSTEM_PROXY = true;
+		AppConfigManager.getInstance(context).clearPreferences();
+
+		server = new MockWebServer();
+		keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+
+		BackendBucketRepository bucketRepository =
+				new BackendBucketRepository(context, server.url("/bucket/").toString(), keyPair.getPublic());
+		keyFileDownloader = new KeyFileDownloader(context, bucketRepository, keyPair.getPublic());
+
+		content = new byte[256 * 1024];
+		new Random(42).nextBytes(content);
+	}
+
+	private String getJwtForContent(byte[] content) throws Exception {
+		HashMap<String, Object> claims = new HashMap<>();
+		MessageDigest digest = MessageDigest.getInstance(SignatureUtil.HASH_ALGO);
+		claims.put(JWS_CLAIM_CONTENT_HASH, Base64Util.toBase64(digest.digest(content)));
+		return Jwts.builder().addClaims(claims).signWith(keyPair.getPrivate()).compact();
+	}
+
+	@Test
+	public void testResumeInterruptedDownload() throws Exception {
+		String jwt = getJwtForContent(content);
+		server.setDispatcher(new RangeDispatcher(content, jwt));
+
+		try {
+			keyFileDownloader.download("1000");
+			fail();
+		} catch (Exception e) {
+			// interrupted download
+		}
+		assertNotNull(keyFileDownloader.getPartialKeyFileName());
+
+		KeyFileDownloader.DownloadResult result = keyFileDownloader.download("1000");
+		assertEquals("2000", result.getKeyBundleTag());
+		assertArrayEquals(content, Okio.buffer(Okio.source(result.getKeyFile())).readByteArray());
+		assertNull(keyFileDownloader.getPartialKeyFileName());
+
+		server.takeRequest();
+		RecordedRequest resumeRequest = server.takeRequest();
+		assertNotNull(resumeRequest.getHeader("Range"));
+		assertEquals(ETAG, resumeRequest.getHeader("If-Range"));
+	}
+
+	@Test
+	public void testResumedDownloadSignatureMismatch() throws Exception {
+		byte[] otherContent = Arrays.copyOf(content, content.length);
+		otherContent[otherContent.length - 1]++;
+		String jwt = getJwtForContent(content);
+		server.setDispatcher(new RangeDispatcher(otherContent, jwt));
+
+		try {
+			keyFileDownloader.download("1000");
+			fail();
+		} catch (Exception e) {
+			// interrupted download
+		}
+		String partialKeyFileName = keyFileDownloader.getPartialKeyFileName();
+		assertNotNull(partialKeyFileName);
+
+		try {
+			keyFileDownloader.download("1000");
+			fail();
+		} catch (SignatureException e) {
+			assertEquals("Signature mismatch", e.getMessage());
+		}
+		assertNull(keyFileDownloader.getPartialKeyFileName());
+		assertFalse(new File(context.getCacheDir(), partialKeyFileName).exists());
+	}
+
+	@Test
+	public void testConditionalRequestNotModified() throws Exception {
+		server.enqueue(new MockResponse()
+				.setResponseCode(204)
+				.addHeader("ETag", ETAG)
+				.addHeader(KEY_BUNDLE_TAG_HEADER, "2000"));
+		server.enqueue(new MockResponse()
+				.setResponseCode(304)
+				.addHeader("ETag", ETAG));
+
+		KeyFileDownloader.DownloadResult result = keyFileDownloader.download("1000");
+		assertFalse(result.isNotModified());
+		assertNull(result.getKeyFile());
+		assertNotNull(result.getValidators());
+		AppConfigManager.getInstance(context).setKeyBundleValidators(result.getValidators());
+
+		result = keyFileDownloader.download("1000");
+		assertTrue(result.isNotModified());
+		assertNull(result.getKeyFile());
+		assertEquals("2000", result.getKeyBundleTag());
+
+		assertNull(server.takeRequest().getHeader("If-None-Match"));
+		assertEquals(ETAG, server.takeRequest().getHeader("If-None-Match"));
+	}
+
+	@Test
+	public void testValidatorsNotSentUntilStored() throws Exception {
+		server.enqueue(new MockResponse()
+				.setResponseCode(204)
+				.addHeader("ETag", ETAG)
+				.addHeader(KEY_BUNDLE_TAG_HEADER, "2000"));
+		server.enqueue(new MockResponse()
+				.setResponseCode(204)
+				.addHeader("ETag", ETAG)
+				.addHeader(KEY_BUNDLE_TAG_HEADER, "2000"));
+
+		keyFileDownloader.download("1000");
+		KeyFileDownloader.DownloadResult result = keyFileDownloader.download("1000");
+		assertFalse(result.isNotModified());
+
+		assertNull(server.takeRequest().getHeader("If-None-Match"));
+		assertNull(server.takeRequest().getHeader("If-None-Match"));
+	}
+
+
+	private static class RangeDispatcher extends Dispatcher {
+
+		private final byte[] content;
+		private final String jwt;
+
+		private RangeDispatcher(byte[] content, String jwt) {
+			this.content = content;
+			this.jwt = jwt;
+		}
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			String range = request.getHeader("Range");
+			if (range == null) {
+				return new MockResponse()
+						.setResponseCode(200)
+						.setBody(new Buffer().write(content))
+						.addHeader("ETag", ETAG)
+						.addHeader(SignatureUtil.HTTP_HEADER_JWS, jwt)
+						.addHeader(KEY_BUNDLE_TAG_HEADER, "2000")
+						.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+			}
+			int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+			return new MockResponse()
+					.setResponseCode(206)
+					.setBody(new Buffer().write(content, start, content.length - start))
+					.addHeader("ETag", ETAG)
+					.addHeader("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length)
+					.addHeader(SignatureUtil.HTTP_HEADER_JWS, jwt)
+					.addHeader(KEY_BUNDLE_TAG_HEADER, "2000");
+		}
+
+	}
+
+}
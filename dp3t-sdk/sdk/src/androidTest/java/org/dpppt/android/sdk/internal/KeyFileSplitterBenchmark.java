@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures {@link KeyFileSplitter} on a 14-day keyfile shaped like a real export: every day holds an export.bin with the
+ * "EK Export v1" header and a TemporaryExposureKeyExport protobuf, and an export.sig with a TEKSignatureList.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeyFileSplitterBenchmark {
+
+	private static final int NUMBER_OF_DAYS = 14;
+	private static final int KEYS_PER_DAY = 2000;
+	private static final byte[] EXPORT_HEADER = "EK Export v1    ".getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+	private Context context;
+	private File keyFile;
+
+	@Before
+	public void setup() throws IOException {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+		keyFile = new File(context.getCacheDir(), "keyfile_benchmark.zip");
+
+		Random random = new Random(42);
+		long firstDay = TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis()) - NUMBER_OF_DAYS;
+		try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(keyFile))) {
+			for (int day = 0; day < NUMBER_OF_DAYS; day++) {
+				zipOut.putNextEntry(new ZipEntry(day + "/export.bin"));
+				zipOut.write(createExportBin(random, firstDay + day));
+				zipOut.closeEntry();
+				zipOut.putNextEntry(new ZipEntry(day + "/export.sig"));
+				zipOut.write(createExportSig(random));
+				zipOut.closeEntry();
+			}
+		}
+	}
+
+	@After
+	public void tearDown() {
+		deleteBenchmarkFiles(true);
+	}
+
+	@Test
+	public void splitMultiDayKeyFile() throws Exception {
+		assertEquals(NUMBER_OF_DAYS, KeyFileSplitter.split(keyFile).size());
+		deleteBenchmarkFiles(false);
+
+		BenchmarkState state = benchmarkRule.getState();
+		while (state.keepRunning()) {
+			KeyFileSplitter.split(keyFile);
+			state.pauseTiming();
+			deleteBenchmarkFiles(false);
+			state.resumeTiming();
+		}
+	}
+
+	@Test
+	public void splitSingleDayKeyFile() throws Exception {
+		File singleDayFile = new File(context.getCacheDir(), "keyfile_benchmark_single.zip");
+		try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(singleDayFile))) {
+			Random random = new Random(42);
+			zipOut.putNextEntry(new ZipEntry("export.bin"));
+			zipOut.write(createExportBin(random, TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis()) - 1));
+			zipOut.closeEntry();
+			zipOut.putNextEntry(new ZipEntry("export.sig"));
+			zipOut.write(createExportSig(random));
+			zipOut.closeEntry();
+		}
+
+		BenchmarkState state = benchmarkRule.getState();
+		while (state.keepRunning()) {
+			List<File> files = KeyFileSplitter.split(singleDayFile);
+			assertEquals(1, files.size());
+		}
+	}
+
+	private void deleteBenchmarkFiles(boolean includingSource) {
+		for (File file : context.getCacheDir().listFiles()) {
+			if (file.getName().startsWith("keyfile_benchmark") && (includingSource || !file.equals(keyFile))) {
+				file.delete();
+			}
+		}
+	}
+
+	private static byte[] createExportBin(Random random, long epochDay) throws IOException {
+		long startTimestamp = TimeUnit.DAYS.toSeconds(epochDay);
+		int rollingStartIntervalNumber = (int) TimeUnit.DAYS.toMinutes(epochDay) / 10;
+
+		ProtoWriter export = new ProtoWriter();
+		export.writeFixed64(1, startTimestamp);
+		export.writeFixed64(2, startTimestamp + TimeUnit.DAYS.toSeconds(1));
+		export.writeBytes(3, "CH".getBytes(StandardCharsets.UTF_8));
+		export.writeVarint(4, 1);
+		export.writeVarint(5, 1);
+		export.writeBytes(6, createSignatureInfo());
+		byte[] keyData = new byte[16];
+		for (int i = 0; i < KEYS_PER_DAY; i++) {
+			random.nextBytes(keyData);
+			ProtoWriter key = new ProtoWriter();
+			key.writeBytes(1, keyData);
+			key.writeVarint(2, 0);
+			key.writeVarint(3, rollingStartIntervalNumber);
+			key.writeVarint(4, 144);
+			key.writeVarint(5, 1);
+			key.writeVarint(6, 0);
+			export.writeBytes(7, key.toByteArray());
+		}
+
+		ByteArrayOutputStream exportBin = new ByteArrayOutputStream();
+		exportBin.write(EXPORT_HEADER);
+		exportBin.write(export.toByteArray());
+		return exportBin.toByteArray();
+	}
+
+	private static byte[] createExportSig(Random random) throws IOException {
+		byte[] signatureBytes = new byte[71];
+		random.nextBytes(signatureBytes);
+		ProtoWriter signature = new ProtoWriter();
+		signature.writeBytes(1, createSignatureInfo());
+		signature.writeVarint(2, 1);
+		signature.writeVarint(3, 1);
+		signature.writeBytes(4, signatureBytes);
+
+		ProtoWriter signatureList = new ProtoWriter();
+		signatureList.writeBytes(1, signature.toByteArray());
+		return signatureList.toByteArray();
+	}
+
+	private static byte[] createSignatureInfo() throws IOException {
+		ProtoWriter signatureInfo = new ProtoWriter();
+		signatureInfo.writeBytes(3, "v1".getBytes(StandardCharsets.UTF_8));
+		signatureInfo.writeBytes(4, "228".getBytes(StandardCharsets.UTF_8));
+		signatureInfo.writeBytes(5, "1.2.840.10045.4.3.2".getBytes(StandardCharsets.UTF_8));
+		return signatureInfo.toByteArray();
+	}
+
+	/**
+	 * Minimal protobuf encoder for the few wire types used by the key export format.
+	 */
+	private static class ProtoWriter {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		void writeVarint(int field, long value) {
+			writeRawVarint(field << 3);
+			writeRawVarint(value);
+		}
+
+		void writeFixed64(int field, long value) {
+			writeRawVarint(field << 3 | 1);
+			for (int i = 0; i < 8; i++) {
+				out.write((int) (value >>> (8 * i)) & 0xff);
+			}
+		}
+
+		void writeBytes(int field, byte[] value) throws IOException {
+			writeRawVarint(field << 3 | 2);
+			writeRawVarint(value.length);
+			out.write(value);
+		}
+
+		byte[] toByteArray() {
+			return out.toByteArray();
+		}
+
+		private void writeRawVarint(long value) {
+			while ((value & ~0x7fL) != 0) {
+				out.write((int) (value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write((int) value);
+		}
+
+	}
+
+}
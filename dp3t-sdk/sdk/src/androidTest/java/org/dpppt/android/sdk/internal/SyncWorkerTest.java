@@ -36,6 +36,7 @@ import org.dpppt.android.sdk.internal.logger.LogLevel;
 import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.sdk.internal.nearby.GaenStateHelper;
 import org.dpppt.android.sdk.internal.nearby.GoogleExposureClient;
+import org.dpppt.android.sdk.internal.nearby.MatchingWorkerTestDriver;
 import org.dpppt.android.sdk.internal.nearby.TestGoogleExposureClient;
 import org.dpppt.android.sdk.internal.util.Json;
 import org.dpppt.android.sdk.models.ApplicationInfo;
@@ -51,6 +52,7 @@ import okhttp3.mockwebserver.RecordedRequest;
 
 import static org.dpppt.android.sdk.internal.SyncWorker.KEY_BUNDLE_TAG_HEADER;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 @RunWith(AndroidJUnit4.class)
 public class SyncWorkerTest {
@@ -202,6 +204,39 @@ public class SyncWorkerTest {
 		assertEquals(0, testGoogleExposureClient.getProvideDiagnosisKeysCounter());
 	}
 
+	@Test
+	public void testNotModifiedAfterFailedProvide() throws Exception {
+		AtomicLong time = new AtomicLong(yesterdayAt8am());
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				if (request.getHeader("If-None-Match") != null) {
+					return new MockResponse().setResponseCode(304).addHeader("ETag", "\"bundle\"");
+				}
+				return new MockResponse()
+						.setResponseCode(200)
+						.setBody("randomdatabecauseitdoesnotmatter")
+						.addHeader("ETag", "\"bundle\"")
+						.addHeader(KEY_BUNDLE_TAG_HEADER, time.get());
+			}
+		});
+
+		testGoogleExposureClient.setProvideDiagnosisKeysFailing(true);
+		try {
+			new SyncWorker.SyncImpl(context, time.get()).doSync();
+		} catch (Exception e) {
+			// provideDiagnosisKeys failed
+		}
+
+		testGoogleExposureClient.setProvideDiagnosisKeysFailing(false);
+		time.addAndGet(SyncScheduler.SYNC_INTERVAL);
+		new SyncWorker.SyncImpl(context, time.get()).doSync();
+
+		assertEquals(1, testGoogleExposureClient.getProvideDiagnosisKeysCounter());
+		assertNull(server.takeRequest().getHeader("If-None-Match"));
+		assertNull(server.takeRequest().getHeader("If-None-Match"));
+	}
+
 	@Test
 	public void testExposure() {
 		TestGoogleExposureClient.ExposureTestParameters params = new TestGoogleExposureClient.ExposureTestParameters();
@@ -350,6 +385,7 @@ public class SyncWorkerTest {
 
 		try {
 			new SyncWorker.SyncImpl(context, time.get()).doSync();
+			MatchingWorkerTestDriver.runPendingMatching(context);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.Collections;
+
+import org.dpppt.android.sdk.DP3T;
+import org.dpppt.android.sdk.InfectionStatus;
+import org.dpppt.android.sdk.TracingStatus;
+import org.dpppt.android.sdk.internal.storage.ExposureDayStorage;
+import org.dpppt.android.sdk.models.ApplicationInfo;
+import org.dpppt.android.sdk.models.DayDate;
+import org.dpppt.android.sdk.models.ExposureDay;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class TracingStatusCacheTest {
+
+	private Context context;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+		DP3T.init(context, new ApplicationInfo("", ""), null);
+		AppConfigManager.getInstance(context).setIAmInfected(false);
+		ExposureDayStorage.getInstance(context).clear();
+	}
+
+	@Test
+	public void testStatusFollowsWrites() {
+		assertEquals(InfectionStatus.HEALTHY, DP3T.getStatus(context).getInfectionStatus());
+
+		ExposureDayStorage.getInstance(context).addExposureDays(context,
+				Collections.singletonList(new ExposureDay(-1, new DayDate(), System.currentTimeMillis())));
+		TracingStatus status = DP3T.getStatus(context);
+		assertEquals(InfectionStatus.EXPOSED, status.getInfectionStatus());
+		assertEquals(1, status.getExposureDays().size());
+
+		AppConfigManager.getInstance(context).setIAmInfected(true);
+		assertEquals(InfectionStatus.INFECTED, DP3T.getStatus(context).getInfectionStatus());
+	}
+
+	@Test
+	public void testStaleStatusIsNotStored() {
+		TracingStatusCache.invalidate();
+		int generation = TracingStatusCache.getGeneration();
+		TracingStatus status = DP3T.getStatus(context);
+
+		TracingStatusCache.invalidate();
+		TracingStatusCache.put(status, generation, Long.MAX_VALUE);
+		assertNull(TracingStatusCache.get(System.currentTimeMillis()));
+
+		TracingStatusCache.put(status, TracingStatusCache.getGeneration(), System.currentTimeMillis() + 1000);
+		assertNotNull(TracingStatusCache.get(System.currentTimeMillis()));
+		assertNull(TracingStatusCache.get(System.currentTimeMillis() + 1000));
+	}
+
+}
@@ -87,6 +87,26 @@ public class SignatureVerificationInterceptorTest {
 		assertEquals(responseString, response);
 	}
 
+	@Test
+	public void testValidSignatureLargeContent() throws IOException, StatusCodeException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			content.append(i).append(',');
+		}
+		String responseString = content.toString();
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse()
+						.setResponseCode(200)
+						.setBody(responseString)
+						.addHeader(SignatureUtil.HTTP_HEADER_JWS, getJwtForContent(responseString));
+			}
+		});
+		String response = bucketRepository.getGaenExposees(null).body().string();
+		assertEquals(responseString, response);
+	}
+
 	@Test
 	public void testInvalidSignature() throws IOException, StatusCodeException {
 		String responseString = "someRandomContent";
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
+import com.google.android.gms.nearby.exposurenotification.ScanInstance;
+
+import org.dpppt.android.sdk.AttenuationBucketRiskScorer;
+import org.dpppt.android.sdk.RiskScorer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the scoring of 10k scan instances spread over 14 days of synthetic exposure windows, once with the default
+ * scorer only and once together with candidate scorers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AttenuationBucketingBenchmark {
+
+	private static final int NUMBER_OF_DAYS = 14;
+	private static final int NUMBER_OF_WINDOWS = 500;
+	private static final int SCAN_INSTANCES_PER_WINDOW = 20;
+
+	@Rule
+	public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+	private final RiskScorer defaultRiskScorer = new MatchingParameters(55, 63, 1.0f, 0.5f, 15, 10).toRiskScorer();
+	private List<ExposureWindow> exposureWindows;
+	private int firstEpochDay;
+
+	@Before
+	public void setup() {
+		Random random = new Random(42);
+		firstEpochDay = DayRiskScores.toEpochDay(System.currentTimeMillis()) - NUMBER_OF_DAYS;
+		exposureWindows = new ArrayList<>(NUMBER_OF_WINDOWS);
+		for (int i = 0; i < NUMBER_OF_WINDOWS; i++) {
+			List<ScanInstance> scanInstances = new ArrayList<>(SCAN_INSTANCES_PER_WINDOW);
+			for (int j = 0; j < SCAN_INSTANCES_PER_WINDOW; j++) {
+				int attenuation = 40 + random.nextInt(40);
+				scanInstances.add(new ScanInstance.Builder()
+						.setTypicalAttenuationDb(attenuation)
+						.setMinAttenuationDb(attenuation - random.nextInt(5))
+						.setSecondsSinceLastScan(60 + random.nextInt(240))
+						.build());
+			}
+			exposureWindows.add(new ExposureWindow.Builder()
+					.setDateMillisSinceEpoch(DayRiskScores.toStartOfDay(firstEpochDay + i % NUMBER_OF_DAYS))
+					.setScanInstances(scanInstances)
+					.build());
+		}
+	}
+
+	@Test
+	public void bucket10kScanInstances() {
+		runBenchmark(new RiskScorer[] { defaultRiskScorer });
+	}
+
+	@Test
+	public void bucket10kScanInstancesWithCandidates() {
+		runBenchmark(new RiskScorer[] {
+				defaultRiskScorer,
+				new AttenuationBucketRiskScorer(new int[] { 50, 60, 70 }, new float[] { 1.0f, 0.5f, 0.25f, 0 }, 15),
+				new AttenuationBucketRiskScorer(new int[] { 55, 63 }, new float[] { 1.0f, 0.5f, 0 }, 15,
+						new float[] { 0, 1.0f, 1.5f }, new float[0], true)
+		});
+	}
+
+	private void runBenchmark(RiskScorer[] riskScorers) {
+		DayRiskScores dayRiskScores = new DayRiskScores(riskScorers, firstEpochDay, NUMBER_OF_DAYS);
+		BenchmarkState state = benchmarkRule.getState();
+		while (state.keepRunning()) {
+			dayRiskScores.clear();
+			for (int i = 0, size = exposureWindows.size(); i < size; i++) {
+				dayRiskScores.add(exposureWindows.get(i));
+			}
+		}
+		for (int dayIndex = 0; dayIndex < NUMBER_OF_DAYS; dayIndex++) {
+			assertTrue(dayRiskScores.isChanged(dayIndex));
+		}
+	}
+
+}
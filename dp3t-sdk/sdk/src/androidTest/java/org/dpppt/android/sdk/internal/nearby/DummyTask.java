@@ -16,6 +16,7 @@ import androidx.annotation.Nullable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
+import com.google.android.gms.tasks.OnCanceledListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
@@ -106,4 +107,22 @@ public class DummyTask<T> extends Task<T> {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public Task<T> addOnCanceledListener(@NonNull OnCanceledListener var1) {
+		return this;
+	}
+
+	@NonNull
+	@Override
+	public Task<T> addOnCanceledListener(@NonNull Executor var1, @NonNull OnCanceledListener var2) {
+		return this;
+	}
+
+	@NonNull
+	@Override
+	public Task<T> addOnCanceledListener(@NonNull Activity var1, @NonNull OnCanceledListener var2) {
+		return this;
+	}
+
 }
@@ -13,13 +13,13 @@ import android.content.Context;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
+import org.dpppt.android.sdk.RiskScorer;
 import org.dpppt.android.sdk.internal.AppConfigManager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static junit.framework.TestCase.assertTrue;
-import static org.dpppt.android.sdk.internal.nearby.ExposureWindowMatchingWorker.convertAttenuationDurationsToMinutes;
 import static org.junit.Assert.assertFalse;
 
 @RunWith(AndroidJUnit4.class)
@@ -36,14 +36,14 @@ public class ExposureNotifactionThresholdTest {
 	public void testDefault() {
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
 		appConfigManager.clearPreferences();
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 15, 0, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 10, 10, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 0, 30, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 30, 30, 30 }));
-
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 14, 1, 0 }));
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 5, 19, 0 }));
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 0, 29, 30 }));
+		assertTrue(isExposureLimitReached(new int[] { 15 * 60, 0, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 10 * 60, 10 * 60, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 0, 30 * 60, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 30 * 60, 30 * 60, 30 * 60 }));
+
+		assertFalse(isExposureLimitReached(new int[] { 14 * 60, 60, 0 }));
+		assertFalse(isExposureLimitReached(new int[] { 5 * 60, 19 * 60, 0 }));
+		assertFalse(isExposureLimitReached(new int[] { 0, 29 * 60, 30 * 60 }));
 	}
 
 
@@ -55,29 +55,38 @@ public class ExposureNotifactionThresholdTest {
 		appConfigManager.setAttenuationFactorMedium(2f);
 		appConfigManager.setMinDurationForExposure(10);
 
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 20, 0, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 10, 3, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 0, 30, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 30, 0, 0 }));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 30, 30, 30 }));
+		assertTrue(isExposureLimitReached(new int[] { 20 * 60, 0, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 10 * 60, 3 * 60, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 0, 30 * 60, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 30 * 60, 0, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 30 * 60, 30 * 60, 30 * 60 }));
 
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 1, 4, 0 }));
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 15, 1, 0 }));
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, new int[] { 19, 0, 30 }));
+		assertFalse(isExposureLimitReached(new int[] { 60, 4 * 60, 0 }));
+		assertFalse(isExposureLimitReached(new int[] { 15 * 60, 60, 0 }));
+		assertFalse(isExposureLimitReached(new int[] { 19 * 60, 0, 30 * 60 }));
 	}
 
 	@Test
 	public void testDefaultWithSeconds() {
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
 		appConfigManager.clearPreferences();
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 14*60+1, 0, 0 })));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 10*60, 10*60, 0 })));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 0, 29*60+1, 0 })));
-		assertTrue(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 30*60, 30*60, 30*60 })));
-
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 14*60, 1, 0 })));
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 5*60, 19*60, 0 })));
-		assertFalse(ExposureWindowMatchingWorker.isExposureLimitReached(context, convertAttenuationDurationsToMinutes(new int[] { 0, 29*60, 30*60 })));
+		assertTrue(isExposureLimitReached(new int[] { 14 * 60 + 1, 0, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 10 * 60, 10 * 60, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 0, 29 * 60 + 1, 0 }));
+		assertTrue(isExposureLimitReached(new int[] { 30 * 60, 30 * 60, 30 * 60 }));
+
+		assertFalse(isExposureLimitReached(new int[] { 14 * 60, 1, 0 }));
+		assertFalse(isExposureLimitReached(new int[] { 5 * 60, 19 * 60, 0 }));
+		assertFalse(isExposureLimitReached(new int[] { 0, 29 * 60, 30 * 60 }));
+	}
+
+	private boolean isExposureLimitReached(int[] attenuationDurationsInSeconds) {
+		RiskScorer riskScorer = MatchingParameters.fromConfig(AppConfigManager.getInstance(context).getSnapshot()).toRiskScorer();
+		double[] dayState = new double[riskScorer.getStateSize()];
+		for (int i = 0; i < attenuationDurationsInSeconds.length; i++) {
+			dayState[i] = attenuationDurationsInSeconds[i];
+		}
+		return riskScorer.isExposureLimitReached(dayState, 0);
 	}
 
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.impl.utils.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.AppConfigManager;
+import org.dpppt.android.sdk.internal.storage.ExposureDayStorage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class ExposureWindowMatchingSchedulingTest {
+
+	private Context context;
+	private TestGoogleExposureClient testGoogleExposureClient;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+
+		Configuration config = new Configuration.Builder()
+				.setMinimumLoggingLevel(Log.DEBUG)
+				.setExecutor(new SynchronousExecutor())
+				.build();
+		WorkManagerTestInitHelper.initializeTestWorkManager(context, config);
+
+		testGoogleExposureClient = new TestGoogleExposureClient(context);
+		GoogleExposureClient.wrapTestClient(testGoogleExposureClient);
+		AppConfigManager.getInstance(context).clearPreferences();
+		ExposureDayStorage.getInstance(context).clear();
+	}
+
+	@Test
+	public void testBurstOfTriggersIsCoalesced() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			ExposureWindowMatchingWorker.startMatchingWorker(context);
+		}
+
+		List<WorkInfo> workInfos =
+				WorkManager.getInstance(context).getWorkInfosForUniqueWork(ExposureWindowMatchingWorker.WORK_NAME).get();
+		assertEquals(1, workInfos.size());
+		assertEquals(WorkInfo.State.ENQUEUED, workInfos.get(0).getState());
+
+		assertEquals(1, MatchingWorkerTestDriver.runPendingMatching(context));
+		assertEquals(1, testGoogleExposureClient.getGetExposureWindowsCounter());
+	}
+
+	@Test
+	public void testTriggerAfterPassRunsAgain() throws Exception {
+		ExposureWindowMatchingWorker.startMatchingWorker(context);
+		MatchingWorkerTestDriver.runPendingMatching(context);
+
+		ExposureWindowMatchingWorker.startMatchingWorker(context);
+		assertEquals(1, MatchingWorkerTestDriver.runPendingMatching(context));
+		assertEquals(2, testGoogleExposureClient.getGetExposureWindowsCounter());
+	}
+
+}
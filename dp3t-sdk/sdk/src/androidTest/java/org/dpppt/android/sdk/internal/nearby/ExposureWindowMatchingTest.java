@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
+import com.google.android.gms.nearby.exposurenotification.Infectiousness;
+import com.google.android.gms.nearby.exposurenotification.ScanInstance;
+
+import org.dpppt.android.sdk.AttenuationBucketRiskScorer;
+import org.dpppt.android.sdk.DP3T;
+import org.dpppt.android.sdk.RiskScorer;
+import org.dpppt.android.sdk.internal.AppConfigManager;
+import org.dpppt.android.sdk.internal.storage.ExposureDayStorage;
+import org.dpppt.android.sdk.models.DayDate;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ExposureWindowMatchingTest {
+
+	private Context context;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+		AppConfigManager.getInstance(context).clearPreferences();
+		ExposureDayStorage.getInstance(context).clear();
+		DP3T.setRiskScorer(context, null);
+		DP3T.setCandidateRiskScorers(context, Collections.emptyList(), null);
+	}
+
+	@Test
+	public void testProcessedWindowsAreNotCountedTwice() {
+		DayDate day = new DayDate().subtractDays(2);
+		List<ExposureWindow> windows = new ArrayList<>();
+		windows.add(createWindow(day, 10 * 60));
+
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows);
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows);
+		assertEquals(0, ExposureDayStorage.getInstance(context).getExposureDays().size());
+
+		windows.add(createWindow(day, 5 * 60));
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows);
+		assertEquals(1, ExposureDayStorage.getInstance(context).getExposureDays().size());
+	}
+
+	@Test
+	public void testIdenticalWindowsAreCounted() {
+		DayDate day = new DayDate().subtractDays(2);
+		ExposureWindow window = createWindow(day, 8 * 60);
+
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, Collections.singletonList(window));
+		assertEquals(0, ExposureDayStorage.getInstance(context).getExposureDays().size());
+
+		List<ExposureWindow> windows = new ArrayList<>();
+		windows.add(window);
+		windows.add(window);
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows);
+		assertEquals(1, ExposureDayStorage.getInstance(context).getExposureDays().size());
+	}
+
+	@Test
+	public void testFingerprintsOfDistinctWindowsDiffer() throws Exception {
+		DayDate day = new DayDate().subtractDays(2);
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		// these two windows collide in a 31 based polynomial hash of their fields
+		ExposureWindow window = createWindow(day, 40, 50, 180);
+		ExposureWindow otherWindow = createWindow(day, 40, 51, 149);
+
+		assertEquals(ExposureWindowMatchingWorker.getFingerprint(window, digest),
+				ExposureWindowMatchingWorker.getFingerprint(createWindow(day, 40, 50, 180), digest));
+		assertNotEquals(ExposureWindowMatchingWorker.getFingerprint(window, digest),
+				ExposureWindowMatchingWorker.getFingerprint(otherWindow, digest));
+	}
+
+	@Test
+	public void testCandidateRiskScorersAreOnlyReported() {
+		DayDate day = new DayDate().subtractDays(2);
+		RiskScorer candidate = new AttenuationBucketRiskScorer(new int[] { 55, 63 }, new float[] { 1.0f, 0.5f, 0 }, 5);
+		List<DayDate> candidateExposureDays = new ArrayList<>();
+		DP3T.setCandidateRiskScorers(context, Collections.singletonList(candidate), (candidateRiskScorer, exposureDays) -> {
+			assertEquals(candidate, candidateRiskScorer);
+			candidateExposureDays.addAll(exposureDays);
+		});
+
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context,
+				Collections.singletonList(createWindow(day, 10 * 60)));
+		assertEquals(0, ExposureDayStorage.getInstance(context).getExposureDays().size());
+		assertEquals(Collections.singletonList(day), candidateExposureDays);
+	}
+
+	@Test
+	public void testCustomRiskScorer() {
+		DayDate day = new DayDate().subtractDays(2);
+		DP3T.setRiskScorer(context, new AttenuationBucketRiskScorer(new int[] { 55, 63 }, new float[] { 1.0f, 0.5f, 0 }, 15,
+				new float[] { 0, 1.0f, 2.0f }, new float[0], false));
+
+		ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context,
+				Collections.singletonList(createWindow(day, 8 * 60, Infectiousness.HIGH)));
+		assertEquals(1, ExposureDayStorage.getInstance(context).getExposureDays().size());
+	}
+
+	@Test
+	public void testMatchingIsPostponedUntilRiskScorerIsSet() {
+		DayDate day = new DayDate().subtractDays(2);
+		RiskScorer riskScorer = new AttenuationBucketRiskScorer(new int[] { 55, 63 }, new float[] { 1.0f, 0.5f, 0 }, 15,
+				new float[] { 0, 1.0f, 1.0f }, new float[0], false);
+		DP3T.setRiskScorer(context, riskScorer);
+		List<ExposureWindow> windows = new ArrayList<>();
+		windows.add(createWindow(day, 10 * 60));
+		assertTrue(ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows));
+
+		// cold start: the signature of the scorer is stored, but the app did not set the scorer yet
+		DP3T.setRiskScorer(context, null);
+		AppConfigManager.getInstance(context)
+				.setRiskScorerSignature(ExposureWindowMatchingWorker.getRiskScorerSignature(riskScorer, Collections.emptyList()));
+		windows.add(createWindow(day, 5 * 60));
+		assertFalse(ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows));
+		assertEquals(0, ExposureDayStorage.getInstance(context).getExposureDays().size());
+
+		DP3T.setRiskScorer(context, riskScorer);
+		assertTrue(ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows));
+		assertEquals(1, ExposureDayStorage.getInstance(context).getExposureDays().size());
+	}
+
+	@Test
+	public void testMatchingFallsBackToCurrentRiskScorerAfterPostponing() {
+		DayDate day = new DayDate().subtractDays(2);
+		RiskScorer riskScorer = new AttenuationBucketRiskScorer(new int[] { 55, 63 }, new float[] { 1.0f, 0.5f, 0 }, 30,
+				new float[] { 0, 1.0f, 1.0f }, new float[0], false);
+		// an earlier app version set a scorer that the current one no longer sets
+		AppConfigManager.getInstance(context)
+				.setRiskScorerSignature(ExposureWindowMatchingWorker.getRiskScorerSignature(riskScorer, Collections.emptyList()));
+		List<ExposureWindow> windows = new ArrayList<>();
+		windows.add(createWindow(day, 10 * 60));
+		windows.add(createWindow(day, 5 * 60));
+
+		assertFalse(ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows, true));
+		assertTrue(ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows, false));
+		assertEquals(1, ExposureDayStorage.getInstance(context).getExposureDays().size());
+		assertNull(AppConfigManager.getInstance(context).getRiskScorerSignature());
+
+		assertTrue(ExposureWindowMatchingWorker.addDaysWhereExposureLimitIsReached(context, windows, true));
+	}
+
+	private static ExposureWindow createWindow(DayDate day, int secondsAtLowAttenuation) {
+		return createWindow(day, secondsAtLowAttenuation, Infectiousness.STANDARD);
+	}
+
+	private static ExposureWindow createWindow(DayDate day, int secondsAtLowAttenuation, int infectiousness) {
+		ScanInstance scanInstance = new ScanInstance.Builder()
+				.setTypicalAttenuationDb(40)
+				.setMinAttenuationDb(35)
+				.setSecondsSinceLastScan(secondsAtLowAttenuation)
+				.build();
+		return new ExposureWindow.Builder()
+				.setDateMillisSinceEpoch(day.getStartOfDayTimestamp())
+				.setScanInstances(Collections.singletonList(scanInstance))
+				.setInfectiousness(infectiousness)
+				.build();
+	}
+
+	private static ExposureWindow createWindow(DayDate day, int typicalAttenuation, int minAttenuation, int seconds) {
+		ScanInstance scanInstance = new ScanInstance.Builder()
+				.setTypicalAttenuationDb(typicalAttenuation)
+				.setMinAttenuationDb(minAttenuation)
+				.setSecondsSinceLastScan(seconds)
+				.build();
+		return new ExposureWindow.Builder()
+				.setDateMillisSinceEpoch(day.getStartOfDayTimestamp())
+				.setScanInstances(Collections.singletonList(scanInstance))
+				.build();
+	}
+
+}
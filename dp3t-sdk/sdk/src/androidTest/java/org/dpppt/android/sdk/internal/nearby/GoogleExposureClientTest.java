@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import android.app.Activity;
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.android.gms.nearby.exposurenotification.DiagnosisKeyFileProvider;
+import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class GoogleExposureClientTest {
+
+	private Context context;
+	private GoogleExposureClient googleExposureClient;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+		googleExposureClient = GoogleExposureClient.wrapTestClient(new TestGoogleExposureClient(context) {
+			@Override
+			public Task<List<ExposureWindow>> getExposureWindows() {
+				return new PendingTask<>();
+			}
+
+			@Override
+			public Task<Void> provideDiagnosisKeys(DiagnosisKeyFileProvider diagnosisKeyFileProvider) {
+				return new PendingTask<>();
+			}
+		});
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		googleExposureClient.setTimeout(100, TimeUnit.MILLISECONDS);
+
+		try {
+			googleExposureClient.getExposureWindows();
+			fail();
+		} catch (TimeoutException e) {
+			// Play Services did not answer
+		}
+	}
+
+	@Test
+	public void testProvideDiagnosisKeysTimeout() throws Exception {
+		googleExposureClient.setTimeout(100, TimeUnit.MILLISECONDS);
+		googleExposureClient.setProvideDiagnosisKeysTimeout(1, TimeUnit.SECONDS);
+
+		File keyFile = new File(context.getCacheDir(), "keyfile_timeout_test.zip");
+		ListenableFuture<Void> future = googleExposureClient.provideDiagnosisKeysAsync(Collections.singletonList(keyFile));
+
+		Thread.sleep(500);
+		assertFalse(future.isDone());
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+
+
+	/**
+	 * A task that never completes, like a call to Play Services whose callback got lost.
+	 */
+	private static class PendingTask<T> extends DummyTask<T> {
+
+		PendingTask() {
+			super(null);
+		}
+
+		@Override
+		public boolean isComplete() {
+			return false;
+		}
+
+		@Override
+		public boolean isSuccessful() {
+			return false;
+		}
+
+		@NonNull
+		@Override
+		public Task<T> addOnSuccessListener(@NonNull OnSuccessListener<? super T> var1) {
+			return this;
+		}
+
+		@NonNull
+		@Override
+		public Task<T> addOnSuccessListener(@NonNull Executor var1, @NonNull OnSuccessListener<? super T> var2) {
+			return this;
+		}
+
+		@NonNull
+		@Override
+		public Task<T> addOnSuccessListener(@NonNull Activity var1, @NonNull OnSuccessListener<? super T> var2) {
+			return this;
+		}
+
+	}
+
+}
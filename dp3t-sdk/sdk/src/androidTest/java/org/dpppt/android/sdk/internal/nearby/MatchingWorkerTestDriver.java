@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import android.content.Context;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.TestDriver;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs the delayed matching work of the test WorkManager and waits until it has finished, as the worker completes on the
+ * thread of the exposure windows task.
+ */
+public class MatchingWorkerTestDriver {
+
+	private static final long TIMEOUT = 5000;
+
+	/**
+	 * @return the number of matching passes that were run
+	 */
+	public static int runPendingMatching(Context context) throws Exception {
+		WorkManager workManager = WorkManager.getInstance(context);
+		TestDriver testDriver = WorkManagerTestInitHelper.getTestDriver(context);
+
+		List<UUID> pendingWork = new ArrayList<>();
+		for (WorkInfo workInfo : workManager.getWorkInfosForUniqueWork(ExposureWindowMatchingWorker.WORK_NAME).get()) {
+			if (workInfo.getState() == WorkInfo.State.ENQUEUED) {
+				pendingWork.add(workInfo.getId());
+			}
+		}
+		for (UUID id : pendingWork) {
+			testDriver.setInitialDelayMet(id);
+		}
+
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		for (UUID id : pendingWork) {
+			while (!workManager.getWorkInfoById(id).get().getState().isFinished()) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("matching did not finish within " + TIMEOUT + "ms");
+				}
+				Thread.sleep(10);
+			}
+		}
+		return pendingWork.size();
+	}
+
+}
@@ -34,6 +34,8 @@ public class TestGoogleExposureClient implements ExposureNotificationClient {
 
 	private Context context;
 	private int provideDiagnosisKeysCounter = 0;
+	private int getExposureWindowsCounter = 0;
+	private boolean provideDiagnosisKeysFailing = false;
 	private boolean currentDayKeyReleased = false;
 	private long time = System.currentTimeMillis();
 	private ExposureTestParameters params;
@@ -90,6 +92,9 @@ public class TestGoogleExposureClient implements ExposureNotificationClient {
 
 	@Override
 	public Task<Void> provideDiagnosisKeys(DiagnosisKeyFileProvider diagnosisKeyFileProvider) {
+		if (provideDiagnosisKeysFailing) {
+			throw new IllegalStateException("provideDiagnosisKeys failed");
+		}
 		provideDiagnosisKeysCounter++;
 
 		while (diagnosisKeyFileProvider.zza()) {
@@ -112,6 +117,7 @@ public class TestGoogleExposureClient implements ExposureNotificationClient {
 
 	@Override
 	public Task<List<ExposureWindow>> getExposureWindows(String s) {
+		getExposureWindowsCounter++;
 		return new DummyTask<>(params == null ? new ArrayList<>() : params.exposureWindows);
 	}
 
@@ -179,6 +185,14 @@ public class TestGoogleExposureClient implements ExposureNotificationClient {
 		return provideDiagnosisKeysCounter;
 	}
 
+	public int getGetExposureWindowsCounter() {
+		return getExposureWindowsCounter;
+	}
+
+	public void setProvideDiagnosisKeysFailing(boolean failing) {
+		this.provideDiagnosisKeysFailing = failing;
+	}
+
 	public void setTime(long time) {
 		this.time = time;
 	}
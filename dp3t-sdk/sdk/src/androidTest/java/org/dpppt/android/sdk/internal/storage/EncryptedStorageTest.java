@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+public class EncryptedStorageTest {
+
+	private Context context;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getInstrumentation().getContext();
+	}
+
+	@Test
+	public void testAsyncAccessorsReturnPreloadedInstances() throws Exception {
+		EncryptedStorage.preload(context);
+
+		assertSame(ExposureDayStorage.getInstance(context),
+				ExposureDayStorage.getInstanceAsync(context).get(10, TimeUnit.SECONDS));
+		assertSame(PendingKeyUploadStorage.getInstance(context),
+				PendingKeyUploadStorage.getInstanceAsync(context).get(10, TimeUnit.SECONDS));
+		assertSame(ErrorNotificationStorage.getInstance(context),
+				ErrorNotificationStorage.getInstanceAsync(context).get(10, TimeUnit.SECONDS));
+	}
+
+}
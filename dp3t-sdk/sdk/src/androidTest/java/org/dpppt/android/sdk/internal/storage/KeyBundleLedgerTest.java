@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.models.DayDate;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class KeyBundleLedgerTest {
+
+	private KeyBundleLedger keyBundleLedger;
+	private long today;
+
+	@Before
+	public void setup() {
+		Context context = InstrumentationRegistry.getInstrumentation().getContext();
+		keyBundleLedger = KeyBundleLedger.getInstance(context);
+		keyBundleLedger.clear();
+		today = new DayDate().getStartOfDayTimestamp();
+	}
+
+	@Test
+	public void testMultipleTagsPerDay() {
+		String morningTag = String.valueOf(today + TimeUnit.HOURS.toMillis(8));
+		String eveningTag = String.valueOf(today + TimeUnit.HOURS.toMillis(20));
+
+		keyBundleLedger.addProvidedBundle(morningTag, 100, today + TimeUnit.HOURS.toMillis(9));
+		keyBundleLedger.addProvidedBundle(eveningTag, 200, today + TimeUnit.HOURS.toMillis(21));
+
+		assertTrue(keyBundleLedger.isProvided(morningTag));
+		assertTrue(keyBundleLedger.isProvided(eveningTag));
+		assertEquals(eveningTag, keyBundleLedger.getLastProvidedBundleTag(today));
+	}
+
+	@Test
+	public void testRepeatedTag() {
+		String tag = String.valueOf(today + TimeUnit.HOURS.toMillis(8));
+		String otherTag = String.valueOf(today + TimeUnit.HOURS.toMillis(12));
+
+		keyBundleLedger.addProvidedBundle(tag, 100, today + TimeUnit.HOURS.toMillis(9));
+		keyBundleLedger.addProvidedBundle(otherTag, 100, today + TimeUnit.HOURS.toMillis(13));
+		keyBundleLedger.addProvidedBundle(tag, 100, today + TimeUnit.HOURS.toMillis(14));
+
+		assertTrue(keyBundleLedger.isProvided(tag));
+		assertTrue(keyBundleLedger.isProvided(otherTag));
+		assertEquals(tag, keyBundleLedger.getLastProvidedBundleTag(today));
+	}
+
+	@Test
+	public void testClearBefore() {
+		DayDate yesterday = new DayDate(today).subtractDays(1);
+		String oldTag = String.valueOf(yesterday.getStartOfDayTimestamp() + TimeUnit.HOURS.toMillis(8));
+
+		keyBundleLedger.addProvidedBundle(oldTag, 100, yesterday.getStartOfDayTimestamp() + TimeUnit.HOURS.toMillis(9));
+		keyBundleLedger.clearBefore(new DayDate(today));
+
+		assertFalse(keyBundleLedger.isProvided(oldTag));
+		assertNull(keyBundleLedger.getLastProvidedBundleTag(0));
+	}
+
+}
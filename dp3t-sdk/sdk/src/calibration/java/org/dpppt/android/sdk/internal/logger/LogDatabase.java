@@ -12,99 +12,254 @@ package org.dpppt.android.sdk.internal.logger;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.dpppt.android.sdk.BuildConfig;
 
+/**
+ * Log entries with the tags in a dictionary table and the level as its importance. Version and build time are stored once
+ * per session, a session starts with the first entry written by a process.
+ */
 public class LogDatabase {
 
+	private static final int PRUNE_BATCH_SIZE = 5000;
+
+	private static final String SQL_INSERT_LOG =
+			"INSERT INTO " + LogSpec.TABLE_NAME + " (" + LogSpec.COLUMN_NAME_SESSION + "," + LogSpec.COLUMN_NAME_LEVEL + "," +
+					LogSpec.COLUMN_NAME_TAG + "," + LogSpec.COLUMN_NAME_MESSAGE + "," + LogSpec.COLUMN_NAME_TIME +
+					") VALUES (?,?,?,?,?)";
+
+	private static final String SQL_INSERT_SEARCH_INDEX =
+			"INSERT INTO " + SearchSpec.TABLE_NAME + " (docid," + SearchSpec.COLUMN_NAME_MESSAGE + ") VALUES (?,?)";
+
 	private final LogDatabaseHelper dbHelper;
 
+	// only used from the writer thread, see LogWriter
+	private final Map<String, Long> tagIds = new HashMap<>();
+	private long sessionId = -1;
+
 	LogDatabase(Context context) {
 		dbHelper = new LogDatabaseHelper(context);
 	}
 
-	void log(String level, String tag, String message, long time) {
+	void log(List<LogEntry> logEntries) {
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		insert(db, level, tag, message, time);
+		db.beginTransaction();
+		try {
+			if (sessionId == -1) {
+				sessionId = insertSession(db);
+			}
+			SQLiteStatement statement = db.compileStatement(SQL_INSERT_LOG);
+			SQLiteStatement searchIndexStatement = db.compileStatement(SQL_INSERT_SEARCH_INDEX);
+			try {
+				for (int i = 0, size = logEntries.size(); i < size; i++) {
+					LogEntry logEntry = logEntries.get(i);
+					statement.bindLong(1, sessionId);
+					statement.bindLong(2, logEntry.getLevel().getImportance());
+					statement.bindLong(3, getTagId(db, logEntry.getTag()));
+					statement.bindString(4, logEntry.getMessage());
+					statement.bindLong(5, logEntry.getTime());
+					long id = statement.executeInsert();
+
+					searchIndexStatement.bindLong(1, id);
+					searchIndexStatement.bindString(2, logEntry.getMessage());
+					searchIndexStatement.executeInsert();
+				}
+			} finally {
+				statement.close();
+				searchIndexStatement.close();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	private long getTagId(SQLiteDatabase db, String tag) {
+		Long tagId = tagIds.get(tag);
+		if (tagId == null) {
+			tagId = DatabaseUtils.longForQuery(db,
+					"SELECT IFNULL((SELECT " + TagSpec._ID + " FROM " + TagSpec.TABLE_NAME + " WHERE " + TagSpec.COLUMN_NAME_NAME +
+							"=?), -1)", new String[] { tag });
+			if (tagId == -1) {
+				ContentValues values = new ContentValues();
+				values.put(TagSpec.COLUMN_NAME_NAME, tag);
+				tagId = db.insert(TagSpec.TABLE_NAME, null, values);
+			}
+			tagIds.put(tag, tagId);
+		}
+		return tagId;
 	}
 
-	protected static void insert(SQLiteDatabase db, String level, String tag, String message, long time) {
+	private static long insertSession(SQLiteDatabase db) {
 		ContentValues values = new ContentValues();
-		values.put(LogSpec.COLUMN_NAME_VERSION, BuildConfig.VERSION_CODE);
-		values.put(LogSpec.COLUMN_NAME_BUILD_TIME, BuildConfig.BUILD_TIME);
-		values.put(LogSpec.COLUMN_NAME_LEVEL, level);
-		values.put(LogSpec.COLUMN_NAME_TAG, tag);
-		values.put(LogSpec.COLUMN_NAME_MESSAGE, message);
-		values.put(LogSpec.COLUMN_NAME_TIME, time);
-		db.insert(LogSpec.TABLE_NAME, null, values);
+		values.put(SessionSpec.COLUMN_NAME_VERSION, BuildConfig.VERSION_CODE);
+		values.put(SessionSpec.COLUMN_NAME_BUILD_TIME, BuildConfig.BUILD_TIME);
+		values.put(SessionSpec.COLUMN_NAME_START_TIME, System.currentTimeMillis());
+		return db.insert(SessionSpec.TABLE_NAME, null, values);
 	}
 
+	private static final String SQL_SELECT_LOGS =
+			"SELECT l." + LogSpec._ID + ", l." + LogSpec.COLUMN_NAME_TIME + ", l." + LogSpec.COLUMN_NAME_LEVEL + ", t." +
+					TagSpec.COLUMN_NAME_NAME + ", l." + LogSpec.COLUMN_NAME_MESSAGE +
+					" FROM " + LogSpec.TABLE_NAME + " l JOIN " + TagSpec.TABLE_NAME + " t ON l." + LogSpec.COLUMN_NAME_TAG + "=t." +
+					TagSpec._ID;
+
 	List<LogEntry> getLogsSince(long sinceTime) {
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		Cursor cursor = db.rawQuery(SQL_SELECT_LOGS +
+						" WHERE l." + LogSpec.COLUMN_NAME_TIME + ">=?" +
+						" ORDER BY l." + LogSpec.COLUMN_NAME_TIME + " ASC",
+				new String[] { String.valueOf(sinceTime) });
+		return readLogEntries(cursor);
+	}
 
-		String[] cols = new String[] { LogSpec.COLUMN_NAME_TIME, LogSpec.COLUMN_NAME_LEVEL,
-				LogSpec.COLUMN_NAME_TAG, LogSpec.COLUMN_NAME_MESSAGE };
-		Cursor cursor = db.query(LogSpec.TABLE_NAME,
-				cols,
-				LogSpec.COLUMN_NAME_TIME + ">=?",
-				new String[] { String.valueOf(sinceTime) },
-				null,
-				null,
-				LogSpec.COLUMN_NAME_TIME + " ASC");
+	List<LogEntry> getLogsAfter(LogFilter filter, LogEntry after, int limit) {
+		return queryPage(filter, after, true, limit);
+	}
 
-		List<LogEntry> logEntries = new ArrayList<>();
+	List<LogEntry> getLogsBefore(LogFilter filter, LogEntry before, int limit) {
+		List<LogEntry> logEntries = queryPage(filter, before, false, limit);
+		Collections.reverse(logEntries);
+		return logEntries;
+	}
+
+	/**
+	 * Keyset pagination on (time, _id), which is the order of the time index, so a page costs the same no matter how deep
+	 * into the log it is. Level and tags are filtered in the query.
+	 */
+	private List<LogEntry> queryPage(LogFilter filter, LogEntry anchor, boolean ascending, int limit) {
+		List<String> args = new ArrayList<>();
+		StringBuilder sql = new StringBuilder(SQL_SELECT_LOGS);
+		appendFilter(sql, args, filter);
+
+		if (anchor != null) {
+			// the first bound alone lets SQLite seek in the index, the second one excludes the anchor and its predecessors
+			String comparison = ascending ? ">" : "<";
+			sql.append(" AND l.").append(LogSpec.COLUMN_NAME_TIME).append(comparison).append("=?")
+					.append(" AND (l.").append(LogSpec.COLUMN_NAME_TIME).append(comparison).append("?")
+					.append(" OR l.").append(LogSpec._ID).append(comparison).append("?)");
+			args.add(String.valueOf(anchor.getTime()));
+			args.add(String.valueOf(anchor.getTime()));
+			args.add(String.valueOf(anchor.getId()));
+		}
+
+		appendOrder(sql, ascending, limit);
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		return readLogEntries(db.rawQuery(sql.toString(), args.toArray(new String[0])));
+	}
+
+	/**
+	 * The newest entries matching the filter whose message contains all words of the query, oldest first. The words are
+	 * matched as prefixes through the full-text index.
+	 */
+	List<LogEntry> searchLogs(String query, LogFilter filter, int limit) {
+		String matchExpression = toMatchExpression(query);
+		if (matchExpression == null) {
+			return new ArrayList<>();
+		}
+
+		List<String> args = new ArrayList<>();
+		StringBuilder sql = new StringBuilder(SQL_SELECT_LOGS);
+		appendFilter(sql, args, filter);
+		sql.append(" AND l.").append(LogSpec._ID).append(" IN (SELECT docid FROM ").append(SearchSpec.TABLE_NAME)
+				.append(" WHERE ").append(SearchSpec.TABLE_NAME).append(" MATCH ?)");
+		args.add(matchExpression);
+		appendOrder(sql, false, limit);
+
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		List<LogEntry> logEntries = readLogEntries(db.rawQuery(sql.toString(), args.toArray(new String[0])));
+		Collections.reverse(logEntries);
+		return logEntries;
+	}
+
+	/**
+	 * Turns free text into a query of quoted prefix terms, so that user input can not produce an invalid MATCH expression.
+	 */
+	static String toMatchExpression(String query) {
+		StringBuilder matchExpression = new StringBuilder();
+		for (String word : query.replace("\"", " ").trim().split("\\s+")) {
+			if (!word.isEmpty()) {
+				if (matchExpression.length() > 0) {
+					matchExpression.append(' ');
+				}
+				matchExpression.append('"').append(word).append("*\"");
+			}
+		}
+		return matchExpression.length() > 0 ? matchExpression.toString() : null;
+	}
+
+	private static void appendFilter(StringBuilder sql, List<String> args, LogFilter filter) {
+		sql.append(" WHERE l.").append(LogSpec.COLUMN_NAME_LEVEL).append(">=?");
+		args.add(String.valueOf(filter.getMinLevel().getImportance()));
+
+		if (!filter.getTags().isEmpty()) {
+			sql.append(" AND l.").append(LogSpec.COLUMN_NAME_TAG).append(" IN (SELECT ").append(TagSpec._ID)
+					.append(" FROM ").append(TagSpec.TABLE_NAME).append(" WHERE ").append(TagSpec.COLUMN_NAME_NAME)
+					.append(" IN (");
+			boolean first = true;
+			for (String tag : filter.getTags()) {
+				sql.append(first ? "?" : ",?");
+				args.add(tag);
+				first = false;
+			}
+			sql.append("))");
+		}
+	}
+
+	private static void appendOrder(StringBuilder sql, boolean ascending, int limit) {
+		String order = ascending ? " ASC" : " DESC";
+		sql.append(" ORDER BY l.").append(LogSpec.COLUMN_NAME_TIME).append(order)
+				.append(", l.").append(LogSpec._ID).append(order)
+				.append(" LIMIT ").append(limit);
+	}
 
+	private static List<LogEntry> readLogEntries(Cursor cursor) {
+		List<LogEntry> logEntries = new ArrayList<>();
 		try {
-			if (cursor.moveToFirst()) {
-				int colIdxTime = cursor.getColumnIndex(LogSpec.COLUMN_NAME_TIME);
-				int colIdxLevel = cursor.getColumnIndex(LogSpec.COLUMN_NAME_LEVEL);
-				int colIdxTag = cursor.getColumnIndex(LogSpec.COLUMN_NAME_TAG);
-				int colIdxMessage = cursor.getColumnIndex(LogSpec.COLUMN_NAME_MESSAGE);
-
-				do {
-					LogEntry entry = new LogEntry(
-							cursor.getLong(colIdxTime),
-							LogLevel.byKey(cursor.getString(colIdxLevel)),
-							cursor.getString(colIdxTag),
-							cursor.getString(colIdxMessage)
-					);
-					logEntries.add(entry);
-				} while (cursor.moveToNext());
+			while (cursor.moveToNext()) {
+				logEntries.add(new LogEntry(
+						cursor.getLong(0),
+						cursor.getLong(1),
+						LogLevel.byImportance(cursor.getInt(2)),
+						cursor.getString(3),
+						cursor.getString(4)
+				));
 			}
 		} finally {
 			cursor.close();
 		}
-
 		return logEntries;
 	}
 
+	/**
+	 * Only the tags that still have entries, found through the tag index of the log table.
+	 */
 	List<String> getTags() {
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
 
-		Cursor cursor = db.query(true,
-				LogSpec.TABLE_NAME,
-				new String[] { LogSpec.COLUMN_NAME_TAG },
-				null,
-				null,
-				null,
-				null,
-				LogSpec.COLUMN_NAME_TAG + " ASC",
+		Cursor cursor = db.rawQuery(
+				"SELECT t." + TagSpec.COLUMN_NAME_NAME + " FROM " + TagSpec.TABLE_NAME + " t" +
+						" WHERE EXISTS (SELECT 1 FROM " + LogSpec.TABLE_NAME + " l WHERE l." + LogSpec.COLUMN_NAME_TAG + "=t." +
+						TagSpec._ID + ")" +
+						" ORDER BY t." + TagSpec.COLUMN_NAME_NAME + " ASC",
 				null);
 
 		List<String> tags = new ArrayList<>();
 
 		try {
-			if (cursor.moveToFirst()) {
-				int colIdxTag = cursor.getColumnIndex(LogSpec.COLUMN_NAME_TAG);
-				do {
-					tags.add(cursor.getString(colIdxTag));
-				} while (cursor.moveToNext());
+			while (cursor.moveToNext()) {
+				tags.add(cursor.getString(0));
 			}
 		} finally {
 			cursor.close();
@@ -115,77 +270,276 @@ public class LogDatabase {
 
 	void clear() {
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		db.execSQL("delete from " + LogSpec.TABLE_NAME);
-		db.execSQL("VACUUM");
-		db.close();
+		db.beginTransaction();
+		try {
+			// recreating the search index is much cheaper than deleting every entry from it through the trigger
+			LogDatabaseHelper.dropSearchIndex(db);
+			db.execSQL("delete from " + LogSpec.TABLE_NAME);
+			db.execSQL("delete from " + TagSpec.TABLE_NAME);
+			db.execSQL("delete from " + SessionSpec.TABLE_NAME);
+			LogDatabaseHelper.createSearchIndex(db);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		tagIds.clear();
+		sessionId = -1;
+		incrementalVacuum(db);
+	}
+
+	/**
+	 * Deletes the oldest entries until all limits of the policy are met. Entries are deleted by ascending id range in
+	 * batches of {@link #PRUNE_BATCH_SIZE} rows, each in its own transaction, so the writer never holds the database for
+	 * long. The freed pages are returned to the file system afterwards.
+	 *
+	 * @return the number of deleted entries
+	 */
+	int prune(LogRetentionPolicy policy, long now) {
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+		long minId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MIN(" + LogSpec._ID + "), 0) FROM " + LogSpec.TABLE_NAME,
+				null);
+		long maxId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + LogSpec._ID + "), 0) FROM " + LogSpec.TABLE_NAME,
+				null);
+		if (maxId == 0) {
+			return 0;
+		}
+
+		// all ids below this one are deleted, ids only grow and entries are only removed from the start
+		long firstIdToKeep = minId;
+
+		long lastExpiredId = DatabaseUtils.longForQuery(db,
+				"SELECT IFNULL(MAX(" + LogSpec._ID + "), 0) FROM " + LogSpec.TABLE_NAME + " WHERE " + LogSpec.COLUMN_NAME_TIME +
+						"<?", new String[] { String.valueOf(now - policy.getMaxAgeMillis()) });
+		firstIdToKeep = Math.max(firstIdToKeep, lastExpiredId + 1);
+
+		firstIdToKeep = Math.max(firstIdToKeep, maxId - policy.getMaxRows() + 1);
+
+		long usedBytes = getUsedBytes(db);
+		long rowCount = maxId - firstIdToKeep + 1;
+		if (usedBytes > policy.getMaxBytes() && rowCount > 0) {
+			long idRange = maxId - minId + 1;
+			long bytesPerRow = Math.max(1, usedBytes / idRange);
+			// keep some headroom so that the next prune is not due right away
+			long rowsToKeep = policy.getMaxBytes() * 9 / 10 / bytesPerRow;
+			firstIdToKeep = Math.max(firstIdToKeep, maxId - rowsToKeep + 1);
+		}
+
+		int deleted = 0;
+		for (long batchStart = minId; batchStart < firstIdToKeep; batchStart += PRUNE_BATCH_SIZE) {
+			long batchEnd = Math.min(batchStart + PRUNE_BATCH_SIZE, firstIdToKeep);
+			db.beginTransaction();
+			try {
+				deleted += db.delete(LogSpec.TABLE_NAME, LogSpec._ID + ">=? AND " + LogSpec._ID + "<?",
+						new String[] { String.valueOf(batchStart), String.valueOf(batchEnd) });
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
+		}
+
+		if (deleted > 0) {
+			incrementalVacuum(db);
+		}
+		return deleted;
+	}
+
+	private static long getUsedBytes(SQLiteDatabase db) {
+		long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+		long pageCount = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+		long freePageCount = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+		return (pageCount - freePageCount) * pageSize;
 	}
 
+	private static void incrementalVacuum(SQLiteDatabase db) {
+		try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum", null)) {
+			while (cursor.moveToNext()) {
+				// the pragma does its work while being stepped through
+			}
+		}
+	}
 
-	public static class LogSpec implements BaseColumns {
 
-		public static final String TABLE_NAME = "log";
-		static final String INDEX_NAME_LEVEL = "i_lvl";
-		static final String INDEX_NAME_TAG = "i_tag";
+	static class LogSpec implements BaseColumns {
+
+		static final String TABLE_NAME = "log";
+		static final String INDEX_NAME_TAG_TIME = "i_tag_time";
 		static final String INDEX_NAME_TIME = "i_time";
+		static final String COLUMN_NAME_SESSION = "session";
 		static final String COLUMN_NAME_LEVEL = "lvl";
 		static final String COLUMN_NAME_TAG = "tag";
 		static final String COLUMN_NAME_MESSAGE = "msg";
 		static final String COLUMN_NAME_TIME = "time";
+
+	}
+
+
+	/**
+	 * FTS4 table indexing the messages of the log table, with the log id as docid. It does not store the messages itself.
+	 */
+	static class SearchSpec {
+
+		static final String TABLE_NAME = "log_search";
+		static final String TRIGGER_NAME_DELETE = "t_log_search_delete";
+		static final String COLUMN_NAME_MESSAGE = LogSpec.COLUMN_NAME_MESSAGE;
+
+	}
+
+
+	static class TagSpec implements BaseColumns {
+
+		static final String TABLE_NAME = "tags";
+		static final String COLUMN_NAME_NAME = "name";
+
+	}
+
+
+	static class SessionSpec implements BaseColumns {
+
+		static final String TABLE_NAME = "sessions";
 		static final String COLUMN_NAME_VERSION = "version";
 		static final String COLUMN_NAME_BUILD_TIME = "build";
+		static final String COLUMN_NAME_START_TIME = "start";
 
 	}
 
 
-	protected static class LogDatabaseHelper extends SQLiteOpenHelper {
+	private static class LogDatabaseHelper extends SQLiteOpenHelper {
 
-		public static final int DATABASE_VERSION = 2;
+		private static final int DATABASE_VERSION = 5;
 		private static final String DATABASE_NAME = "dp3t_sdk_log.db";
-
+		private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+		private static final String SQL_CREATE_SESSIONS =
+				"CREATE TABLE " + SessionSpec.TABLE_NAME + " (" +
+						SessionSpec._ID + " INTEGER PRIMARY KEY," +
+						SessionSpec.COLUMN_NAME_VERSION + " INTEGER NOT NULL," +
+						SessionSpec.COLUMN_NAME_BUILD_TIME + " INTEGER NOT NULL," +
+						SessionSpec.COLUMN_NAME_START_TIME + " INTEGER NOT NULL)";
+		private static final String SQL_CREATE_TAGS =
+				"CREATE TABLE " + TagSpec.TABLE_NAME + " (" +
+						TagSpec._ID + " INTEGER PRIMARY KEY," +
+						TagSpec.COLUMN_NAME_NAME + " TEXT NOT NULL UNIQUE)";
 		private static final String SQL_CREATE_ENTRIES =
 				"CREATE TABLE " + LogSpec.TABLE_NAME + " (" +
 						LogSpec._ID + " INTEGER PRIMARY KEY," +
-						LogSpec.COLUMN_NAME_VERSION + " INTEGER NOT NULL," +
-						LogSpec.COLUMN_NAME_BUILD_TIME + " INTEGER NOT NULL," +
-						LogSpec.COLUMN_NAME_LEVEL + " TEXT NOT NULL," +
-						LogSpec.COLUMN_NAME_TAG + " TEXT NOT NULL," +
+						LogSpec.COLUMN_NAME_SESSION + " INTEGER NOT NULL," +
+						LogSpec.COLUMN_NAME_LEVEL + " INTEGER NOT NULL," +
+						LogSpec.COLUMN_NAME_TAG + " INTEGER NOT NULL," +
 						LogSpec.COLUMN_NAME_MESSAGE + " TEXT NOT NULL," +
 						LogSpec.COLUMN_NAME_TIME + " INTEGER NOT NULL)";
 
-		private static final String SQL_CREATE_INDEX_LEVEL =
-				"CREATE INDEX " + LogSpec.INDEX_NAME_LEVEL + " ON " + LogSpec.TABLE_NAME + "(" + LogSpec.COLUMN_NAME_LEVEL +
-						")";
-		private static final String SQL_CREATE_INDEX_TAG =
-				"CREATE INDEX " + LogSpec.INDEX_NAME_TAG + " ON " + LogSpec.TABLE_NAME + "(" + LogSpec.COLUMN_NAME_TAG + ")";
+		private static final String SQL_CREATE_INDEX_TAG_TIME =
+				"CREATE INDEX " + LogSpec.INDEX_NAME_TAG_TIME + " ON " + LogSpec.TABLE_NAME + "(" + LogSpec.COLUMN_NAME_TAG + "," +
+						LogSpec.COLUMN_NAME_TIME + ")";
 		private static final String SQL_CREATE_INDEX_TIME =
 				"CREATE INDEX " + LogSpec.INDEX_NAME_TIME + " ON " + LogSpec.TABLE_NAME + "(" + LogSpec.COLUMN_NAME_TIME + ")";
 
+		private static final String SQL_CREATE_SEARCH =
+				"CREATE VIRTUAL TABLE " + SearchSpec.TABLE_NAME + " USING fts4(content=\"" + LogSpec.TABLE_NAME + "\", " +
+						SearchSpec.COLUMN_NAME_MESSAGE + ")";
+		// an external content table reads the indexed text from the log row, so the entry has to go before the row
+		private static final String SQL_CREATE_SEARCH_DELETE_TRIGGER =
+				"CREATE TRIGGER " + SearchSpec.TRIGGER_NAME_DELETE + " BEFORE DELETE ON " + LogSpec.TABLE_NAME + " BEGIN " +
+						"DELETE FROM " + SearchSpec.TABLE_NAME + " WHERE docid=old." + LogSpec._ID + "; END";
+
 		private static final String SQL_UPDATE_2_ADD_VERSION_COLUMN =
-				"ALTER TABLE " + LogSpec.TABLE_NAME + " ADD COLUMN " + LogSpec.COLUMN_NAME_VERSION + " INTEGER NOT NULL DEFAULT 1";
+				"ALTER TABLE " + LogSpec.TABLE_NAME + " ADD COLUMN version INTEGER NOT NULL DEFAULT 1";
 		private static final String SQL_UPDATE_2_ADD_BUILDTIME_COLUMN =
-				"ALTER TABLE " + LogSpec.TABLE_NAME + " ADD COLUMN " + LogSpec.COLUMN_NAME_BUILD_TIME +
-						" INTEGER NOT NULL DEFAULT 0";
+				"ALTER TABLE " + LogSpec.TABLE_NAME + " ADD COLUMN build INTEGER NOT NULL DEFAULT 0";
+
+		private static final String LEGACY_TABLE_NAME = "log_v2";
 
 		LogDatabaseHelper(Context context) {
 			super(context, DATABASE_NAME, null, DATABASE_VERSION);
 		}
 
+		@Override
+		public void onConfigure(SQLiteDatabase db) {
+			// only takes effect on a new database, existing ones are converted in onOpen
+			db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+		}
+
 		public void onCreate(SQLiteDatabase db) {
 			executeCreate(db);
+			createSearchIndex(db);
 		}
 
-		protected static void executeCreate(SQLiteDatabase db) {
+		private static void executeCreate(SQLiteDatabase db) {
+			db.execSQL(SQL_CREATE_SESSIONS);
+			db.execSQL(SQL_CREATE_TAGS);
 			db.execSQL(SQL_CREATE_ENTRIES);
-			db.execSQL(SQL_CREATE_INDEX_LEVEL);
-			db.execSQL(SQL_CREATE_INDEX_TAG);
+			db.execSQL(SQL_CREATE_INDEX_TAG_TIME);
 			db.execSQL(SQL_CREATE_INDEX_TIME);
 		}
 
+		static void createSearchIndex(SQLiteDatabase db) {
+			db.execSQL(SQL_CREATE_SEARCH);
+			db.execSQL(SQL_CREATE_SEARCH_DELETE_TRIGGER);
+		}
+
+		static void dropSearchIndex(SQLiteDatabase db) {
+			db.execSQL("DROP TRIGGER IF EXISTS " + SearchSpec.TRIGGER_NAME_DELETE);
+			db.execSQL("DROP TABLE IF EXISTS " + SearchSpec.TABLE_NAME);
+		}
+
+		@Override
+		public void onOpen(SQLiteDatabase db) {
+			if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+				// switching the mode of an existing database needs one full vacuum
+				db.execSQL("VACUUM");
+			}
+		}
+
 		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
 			if (oldVersion < 2) {
 				db.execSQL(SQL_UPDATE_2_ADD_VERSION_COLUMN);
 				db.execSQL(SQL_UPDATE_2_ADD_BUILDTIME_COLUMN);
 			}
+			if (oldVersion < 3) {
+				migrateToDictionaryTables(db);
+			} else if (oldVersion < 4) {
+				// the migration above already creates the current indexes
+				db.execSQL("DROP INDEX IF EXISTS i_tag");
+				db.execSQL(SQL_CREATE_INDEX_TAG_TIME);
+			}
+			if (oldVersion < 5) {
+				createSearchIndex(db);
+				db.execSQL("INSERT INTO " + SearchSpec.TABLE_NAME + " (docid," + SearchSpec.COLUMN_NAME_MESSAGE + ")" +
+						" SELECT " + LogSpec._ID + "," + LogSpec.COLUMN_NAME_MESSAGE + " FROM " + LogSpec.TABLE_NAME);
+			}
+		}
+
+		/**
+		 * Moves the entries of the flat version 2 table into the dictionary encoded tables, one session per version and
+		 * build time.
+		 */
+		private static void migrateToDictionaryTables(SQLiteDatabase db) {
+			db.execSQL("DROP INDEX IF EXISTS i_lvl");
+			db.execSQL("DROP INDEX IF EXISTS i_tag");
+			db.execSQL("DROP INDEX IF EXISTS " + LogSpec.INDEX_NAME_TIME);
+			db.execSQL("ALTER TABLE " + LogSpec.TABLE_NAME + " RENAME TO " + LEGACY_TABLE_NAME);
+			executeCreate(db);
+
+			db.execSQL("INSERT INTO " + SessionSpec.TABLE_NAME + " (" + SessionSpec.COLUMN_NAME_VERSION + "," +
+					SessionSpec.COLUMN_NAME_BUILD_TIME + "," + SessionSpec.COLUMN_NAME_START_TIME + ")" +
+					" SELECT version, build, MIN(time) FROM " + LEGACY_TABLE_NAME + " GROUP BY version, build");
+			db.execSQL("INSERT INTO " + TagSpec.TABLE_NAME + " (" + TagSpec.COLUMN_NAME_NAME + ")" +
+					" SELECT DISTINCT tag FROM " + LEGACY_TABLE_NAME);
+			StringBuilder levelCase = new StringBuilder("CASE o.lvl");
+			for (LogLevel level : LogLevel.values()) {
+				levelCase.append(" WHEN '").append(level.getKey()).append("' THEN ").append(level.getImportance());
+			}
+			levelCase.append(" ELSE ").append(LogLevel.DEBUG.getImportance()).append(" END");
+			db.execSQL("INSERT INTO " + LogSpec.TABLE_NAME + " (" + LogSpec._ID + "," + LogSpec.COLUMN_NAME_SESSION + "," +
+					LogSpec.COLUMN_NAME_LEVEL + "," + LogSpec.COLUMN_NAME_TAG + "," + LogSpec.COLUMN_NAME_MESSAGE + "," +
+					LogSpec.COLUMN_NAME_TIME + ")" +
+					" SELECT o._id, s." + SessionSpec._ID + ", " + levelCase + ", t." + TagSpec._ID + ", o.msg, o.time" +
+					" FROM " + LEGACY_TABLE_NAME + " o" +
+					" JOIN " + SessionSpec.TABLE_NAME + " s ON s." + SessionSpec.COLUMN_NAME_VERSION + "=o.version AND s." +
+					SessionSpec.COLUMN_NAME_BUILD_TIME + "=o.build" +
+					" JOIN " + TagSpec.TABLE_NAME + " t ON t." + TagSpec.COLUMN_NAME_NAME + "=o.tag");
+			db.execSQL("DROP TABLE " + LEGACY_TABLE_NAME);
 		}
 
 	}
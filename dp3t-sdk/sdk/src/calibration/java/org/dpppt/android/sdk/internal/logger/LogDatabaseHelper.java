@@ -10,19 +10,50 @@
 package org.dpppt.android.sdk.internal.logger;
 
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
+import org.dpppt.android.sdk.BuildConfig;
+
+/**
+ * Copies the logs into an export database. The export keeps the flat table with level and tag as text, independent of how
+ * the logs are stored on the device.
+ */
 public class LogDatabaseHelper {
 
+	private static final String TABLE_NAME = "log";
+
+	private static final String SQL_CREATE_ENTRIES =
+			"CREATE TABLE " + TABLE_NAME + " (" +
+					"_id INTEGER PRIMARY KEY," +
+					"version INTEGER NOT NULL," +
+					"build INTEGER NOT NULL," +
+					"lvl TEXT NOT NULL," +
+					"tag TEXT NOT NULL," +
+					"msg TEXT NOT NULL," +
+					"time INTEGER NOT NULL)";
+	private static final String SQL_INSERT =
+			"INSERT INTO " + TABLE_NAME + " (version, build, lvl, tag, msg, time) VALUES (?,?,?,?,?,?)";
+
 	public static void copyLogDatabase(SQLiteDatabase database) {
 		database.beginTransaction();
-		database.execSQL("drop table if exists " + LogDatabase.LogSpec.TABLE_NAME);
-		LogDatabase.LogDatabaseHelper.executeCreate(database);
-		for (LogEntry logEntry : Logger.getLogs(0)) {
-			LogDatabase
-					.insert(database, logEntry.getLevel().getKey(), logEntry.getTag(), logEntry.getMessage(), logEntry.getTime());
+		try {
+			database.execSQL("drop table if exists " + TABLE_NAME);
+			database.execSQL(SQL_CREATE_ENTRIES);
+			SQLiteStatement statement = database.compileStatement(SQL_INSERT);
+			for (LogEntry logEntry : Logger.getLogs(0)) {
+				statement.bindLong(1, BuildConfig.VERSION_CODE);
+				statement.bindLong(2, BuildConfig.BUILD_TIME);
+				statement.bindString(3, logEntry.getLevel().getKey());
+				statement.bindString(4, logEntry.getTag());
+				statement.bindString(5, logEntry.getMessage());
+				statement.bindLong(6, logEntry.getTime());
+				statement.executeInsert();
+			}
+			statement.close();
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
 		}
-		database.setTransactionSuccessful();
-		database.endTransaction();
 	}
 
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits for the log database. The oldest entries are removed as soon as any of the limits is exceeded.
+ */
+class LogRetentionPolicy {
+
+	static final LogRetentionPolicy DEFAULT =
+			new LogRetentionPolicy(200_000, 64L * 1024 * 1024, TimeUnit.DAYS.toMillis(14));
+
+	private final long maxRows;
+	private final long maxBytes;
+	private final long maxAgeMillis;
+
+	LogRetentionPolicy(long maxRows, long maxBytes, long maxAgeMillis) {
+		this.maxRows = maxRows;
+		this.maxBytes = maxBytes;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	long getMaxRows() {
+		return maxRows;
+	}
+
+	long getMaxBytes() {
+		return maxBytes;
+	}
+
+	long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+}
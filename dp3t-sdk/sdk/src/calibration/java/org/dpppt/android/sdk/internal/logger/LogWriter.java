@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.logger;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log entries to the database on a background thread. Callers put entries into a bounded ring buffer without
+ * locking, the writer thread drains it in transactions of up to {@link #BATCH_SIZE} rows. If the buffer is full the entry
+ * is dropped and counted, the count is written as a warning with the next batch.
+ */
+class LogWriter {
+
+	private static final String TAG = "LogWriter";
+
+	private static final int CAPACITY = 4096;
+	private static final int INDEX_MASK = CAPACITY - 1;
+	static final int BATCH_SIZE = 128;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final int PRUNE_INTERVAL_ROWS = 10_000;
+	private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	private static LogWriter instance;
+
+	private final LogDatabase database;
+	private final Thread writerThread;
+
+	private final AtomicReferenceArray<LogEntry> buffer = new AtomicReferenceArray<>(CAPACITY);
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head = 0;
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final List<LogEntry> batch = new ArrayList<>(BATCH_SIZE + 1);
+
+	private final LogRetentionPolicy retentionPolicy = LogRetentionPolicy.DEFAULT;
+	private int rowsSinceLastPrune = 0;
+	private long lastPruneTime = 0;
+
+	static synchronized LogWriter getInstance(Context context) {
+		if (instance == null) {
+			instance = new LogWriter(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	private LogWriter(Context context) {
+		database = new LogDatabase(context);
+		writerThread = new Thread(this::run, "dp3t-log-writer");
+		writerThread.setDaemon(true);
+		writerThread.setPriority(Thread.MIN_PRIORITY);
+		writerThread.start();
+	}
+
+	LogDatabase getDatabase() {
+		return database;
+	}
+
+	/**
+	 * Never blocks. Returns false if the buffer was full and the entry was dropped.
+	 */
+	boolean enqueue(LogEntry entry) {
+		long sequence;
+		do {
+			sequence = tail.get();
+			if (sequence - head >= CAPACITY) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+		} while (!tail.compareAndSet(sequence, sequence + 1));
+		buffer.set((int) sequence & INDEX_MASK, entry);
+
+		if (sequence - head == BATCH_SIZE) {
+			LockSupport.unpark(writerThread);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes all entries enqueued so far on the calling thread, so that they are visible to a following query.
+	 */
+	void flush() {
+		drain();
+	}
+
+	synchronized void clear() {
+		drain();
+		database.clear();
+	}
+
+	private void run() {
+		while (true) {
+			int written = drain();
+			pruneIfDue(written);
+			if (written == 0) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Applies the retention policy at startup and then after every {@link #PRUNE_INTERVAL_ROWS} written rows or
+	 * {@link #PRUNE_INTERVAL_MILLIS}, whichever comes first.
+	 */
+	private synchronized void pruneIfDue(int written) {
+		rowsSinceLastPrune += written;
+		long now = System.currentTimeMillis();
+		if (lastPruneTime != 0 && rowsSinceLastPrune < PRUNE_INTERVAL_ROWS && now - lastPruneTime < PRUNE_INTERVAL_MILLIS) {
+			return;
+		}
+		rowsSinceLastPrune = 0;
+		lastPruneTime = now;
+		try {
+			int deleted = database.prune(retentionPolicy, now);
+			if (deleted > 0) {
+				Log.i(TAG, "pruned " + deleted + " log entries");
+			}
+		} catch (SQLiteException e) {
+			Log.e(TAG, "could not prune log entries", e);
+		}
+	}
+
+	private synchronized int drain() {
+		int written = 0;
+		while (true) {
+			batch.clear();
+			long sequence = head;
+			while (batch.size() < BATCH_SIZE) {
+				int index = (int) sequence & INDEX_MASK;
+				LogEntry entry = buffer.get(index);
+				if (entry == null) {
+					// either empty or claimed by a producer that has not stored its entry yet
+					break;
+				}
+				buffer.lazySet(index, null);
+				batch.add(entry);
+				sequence++;
+			}
+			head = sequence;
+
+			long dropped = droppedCount.getAndSet(0);
+			if (dropped > 0) {
+				batch.add(new LogEntry(System.currentTimeMillis(), LogLevel.WARNING, TAG,
+						"dropped " + dropped + " log entries, the log buffer was full"));
+			}
+			if (batch.isEmpty()) {
+				return written;
+			}
+
+			try {
+				database.log(batch);
+			} catch (SQLiteException e) {
+				Log.e(TAG, "could not write " + batch.size() + " log entries", e);
+			}
+			written += batch.size();
+		}
+	}
+
+}
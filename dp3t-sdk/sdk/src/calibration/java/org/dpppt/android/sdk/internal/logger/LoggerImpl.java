@@ -15,28 +15,45 @@ import java.util.List;
 
 class LoggerImpl {
 
-	private final LogDatabase database;
+	private final LogWriter writer;
 
 	LoggerImpl(Context context) {
-		this.database = new LogDatabase(context);
+		this.writer = LogWriter.getInstance(context);
 	}
 
 	void log(LogLevel level, String tag, String message) {
 		level.getLogcat().log(tag, message);
 
-		database.log(level.getKey(), tag, message, System.currentTimeMillis());
+		writer.enqueue(new LogEntry(System.currentTimeMillis(), level, tag, message));
 	}
 
 	List<LogEntry> getLogs(long sinceTime) {
-		return database.getLogsSince(sinceTime);
+		writer.flush();
+		return writer.getDatabase().getLogsSince(sinceTime);
+	}
+
+	List<LogEntry> getLogsAfter(LogFilter filter, LogEntry after, int limit) {
+		writer.flush();
+		return writer.getDatabase().getLogsAfter(filter, after, limit);
+	}
+
+	List<LogEntry> getLogsBefore(LogFilter filter, LogEntry before, int limit) {
+		writer.flush();
+		return writer.getDatabase().getLogsBefore(filter, before, limit);
+	}
+
+	List<LogEntry> searchLogs(String query, LogFilter filter, int limit) {
+		writer.flush();
+		return writer.getDatabase().searchLogs(query, filter, limit);
 	}
 
 	void clear() {
-		database.clear();
+		writer.clear();
 	}
 
 	List<String> getTags() {
-		return database.getTags();
+		writer.flush();
+		return writer.getDatabase().getTags();
 	}
 
 }
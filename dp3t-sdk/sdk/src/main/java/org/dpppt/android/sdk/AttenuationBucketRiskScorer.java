@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
+import com.google.android.gms.nearby.exposurenotification.ScanInstance;
+
+/**
+ * Sums the scan durations per attenuation bucket and compares the weighted sum of the bucket minutes to a minimum duration.
+ * A scan instance with an attenuation below {@code attenuationThresholds[i]} falls into bucket i, otherwise into the last
+ * bucket. The durations of a window can additionally be weighted by its infectiousness and report type, indexed by the
+ * values of the EN framework. Missing weights count as 1.
+ */
+public class AttenuationBucketRiskScorer implements RiskScorer {
+
+	private final int[] attenuationThresholds;
+	private final float[] bucketWeights;
+	private final int minDurationForExposure;
+	private final float[] infectiousnessWeights;
+	private final float[] reportTypeWeights;
+	private final boolean useMinAttenuation;
+
+	public AttenuationBucketRiskScorer(int[] attenuationThresholds, float[] bucketWeights, int minDurationForExposure) {
+		this(attenuationThresholds, bucketWeights, minDurationForExposure, new float[0], new float[0], false);
+	}
+
+	/**
+	 * @param bucketWeights one weight per bucket, one more than there are thresholds
+	 * @param useMinAttenuation bucket by the minimum instead of the typical attenuation of a scan instance
+	 */
+	public AttenuationBucketRiskScorer(int[] attenuationThresholds, float[] bucketWeights, int minDurationForExposure,
+			float[] infectiousnessWeights, float[] reportTypeWeights, boolean useMinAttenuation) {
+		if (bucketWeights.length != attenuationThresholds.length + 1) {
+			throw new IllegalArgumentException("bucketWeights needs one weight more than there are attenuationThresholds");
+		}
+		for (int i = 1; i < attenuationThresholds.length; i++) {
+			if (attenuationThresholds[i] < attenuationThresholds[i - 1]) {
+				throw new IllegalArgumentException("attenuationThresholds must be ascending");
+			}
+		}
+		this.attenuationThresholds = attenuationThresholds.clone();
+		this.bucketWeights = bucketWeights.clone();
+		this.minDurationForExposure = minDurationForExposure;
+		this.infectiousnessWeights = infectiousnessWeights.clone();
+		this.reportTypeWeights = reportTypeWeights.clone();
+		this.useMinAttenuation = useMinAttenuation;
+	}
+
+	@Override
+	public String getSignature() {
+		return "attenuationBuckets/" + Arrays.toString(attenuationThresholds) + "/" + Arrays.toString(bucketWeights) + "/" +
+				minDurationForExposure + "/" + Arrays.toString(infectiousnessWeights) + "/" +
+				Arrays.toString(reportTypeWeights) + "/" + useMinAttenuation;
+	}
+
+	@Override
+	public int getStateSize() {
+		return bucketWeights.length;
+	}
+
+	@Override
+	public void addExposureWindow(ExposureWindow exposureWindow, double[] dayState, int offset) {
+		double windowWeight = getWeight(infectiousnessWeights, exposureWindow.getInfectiousness()) *
+				getWeight(reportTypeWeights, exposureWindow.getReportType());
+		if (windowWeight == 0) {
+			return;
+		}
+		int[] thresholds = attenuationThresholds;
+		List<ScanInstance> scanInstances = exposureWindow.getScanInstances();
+		for (int i = 0, size = scanInstances.size(); i < size; i++) {
+			ScanInstance scanInstance = scanInstances.get(i);
+			int attenuation = useMinAttenuation ? scanInstance.getMinAttenuationDb() : scanInstance.getTypicalAttenuationDb();
+			int bucket = 0;
+			while (bucket < thresholds.length && attenuation >= thresholds[bucket]) {
+				bucket++;
+			}
+			dayState[offset + bucket] += scanInstance.getSecondsSinceLastScan() * windowWeight;
+		}
+	}
+
+	@Override
+	public boolean isExposureLimitReached(double[] dayState, int offset) {
+		double exposureDuration = 0;
+		for (int bucket = 0; bucket < bucketWeights.length; bucket++) {
+			exposureDuration += Math.ceil(dayState[offset + bucket] / 60.0) * bucketWeights[bucket];
+		}
+		return exposureDuration >= minDurationForExposure;
+	}
+
+	private static double getWeight(float[] weights, int index) {
+		return index >= 0 && index < weights.length ? weights[index] : 1;
+	}
+
+}
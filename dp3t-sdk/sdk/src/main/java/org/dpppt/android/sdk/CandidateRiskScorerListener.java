@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk;
+
+import java.util.List;
+
+import org.dpppt.android.sdk.models.DayDate;
+
+/**
+ * Receives the results of the candidate risk scorers after every matching run that processed new exposure windows. Called
+ * on the matching thread.
+ */
+public interface CandidateRiskScorerListener {
+
+	/**
+	 * @param exposureDays all days within the considered range on which the candidate reaches its exposure limit
+	 */
+	void onCandidateResult(RiskScorer candidateRiskScorer, List<DayDate> exposureDays);
+
+}
@@ -36,11 +36,14 @@ import org.dpppt.android.sdk.internal.history.HistoryDatabase;
 import org.dpppt.android.sdk.internal.history.HistoryEntry;
 import org.dpppt.android.sdk.internal.history.HistoryEntryType;
 import org.dpppt.android.sdk.internal.logger.Logger;
+import org.dpppt.android.sdk.internal.nearby.ExposureWindowMatchingWorker;
 import org.dpppt.android.sdk.internal.nearby.GaenStateCache;
 import org.dpppt.android.sdk.internal.nearby.GaenStateHelper;
 import org.dpppt.android.sdk.internal.nearby.GoogleExposureClient;
+import org.dpppt.android.sdk.internal.storage.EncryptedStorage;
 import org.dpppt.android.sdk.internal.storage.ErrorNotificationStorage;
 import org.dpppt.android.sdk.internal.storage.ExposureDayStorage;
+import org.dpppt.android.sdk.internal.storage.KeyBundleLedger;
 import org.dpppt.android.sdk.internal.storage.PendingKeyUploadStorage;
 import org.dpppt.android.sdk.internal.storage.models.PendingKey;
 import org.dpppt.android.sdk.models.ApplicationInfo;
@@ -66,6 +69,11 @@ public class DP3T {
 	private static boolean initialized = false;
 
 	private static UserAgentInterceptor.UserAgentGenerator userAgent = () -> "dp3t-sdk-android";
+	private static boolean reportRequestCompressionEnabled = false;
+	private static SyncMetricsListener syncMetricsListener = null;
+	private static RiskScorer riskScorer = null;
+	private static List<RiskScorer> candidateRiskScorers = Collections.emptyList();
+	private static CandidateRiskScorerListener candidateRiskScorerListener = null;
 
 	private static PendingStartCallbacks pendingStartCallbacks;
 	private static PendingIAmInfectedRequest pendingIAmInfectedRequest;
@@ -90,6 +98,8 @@ public class DP3T {
 			return;
 		}
 
+		EncryptedStorage.preload(context);
+
 		context.registerReceiver(
 				new BluetoothStateBroadcastReceiver(),
 				new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED)
@@ -201,14 +211,36 @@ public class DP3T {
 		}
 	}
 
+	/**
+	 * Served from an in-memory snapshot that is rebuilt after any change to the underlying state, so it is cheap to call
+	 * repeatedly.
+	 */
 	public static TracingStatus getStatus(Context context) {
 		checkInit();
 		GaenStateHelper.invalidateGaenEnabled(context);
+		long now = System.currentTimeMillis();
+		TracingStatus status = TracingStatusCache.get(now);
+		if (status == null) {
+			int generation = TracingStatusCache.getGeneration();
+			status = buildStatus(context);
+			TracingStatusCache.put(status, generation, new DayDate(now).getNextDay().getStartOfDayTimestamp());
+		}
+		return new TracingStatus(
+				status.isTracingEnabled(),
+				status.getLastSyncDate(),
+				status.getInfectionStatus(),
+				new ArrayList<>(status.getExposureDays()),
+				new HashSet<>(status.getErrors())
+		);
+	}
+
+	private static TracingStatus buildStatus(Context context) {
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
+		AppConfigManager.Snapshot config = appConfigManager.getSnapshot();
 		Collection<TracingStatus.ErrorState> errorStates = ErrorHelper.checkTracingErrorStatus(context, appConfigManager);
 		InfectionStatus infectionStatus;
 		List<ExposureDay> exposureDays = ExposureDayStorage.getInstance(context).getExposureDays();
-		if (appConfigManager.getIAmInfected()) {
+		if (config.iAmInfected) {
 			infectionStatus = InfectionStatus.INFECTED;
 		} else if (exposureDays.size() > 0) {
 			infectionStatus = InfectionStatus.EXPOSED;
@@ -216,8 +248,8 @@ public class DP3T {
 			infectionStatus = InfectionStatus.HEALTHY;
 		}
 		return new TracingStatus(
-				appConfigManager.isTracingEnabled(),
-				appConfigManager.getLastSyncDate(),
+				config.tracingEnabled,
+				config.lastSyncDate,
 				infectionStatus,
 				exposureDays,
 				errorStates
@@ -387,8 +419,10 @@ public class DP3T {
 	public static void resetInfectionStatus(Context context) {
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
 		if (appConfigManager.getIAmInfectedIsResettable()) {
-			appConfigManager.setIAmInfected(false);
-			appConfigManager.setIAmInfectedIsResettable(false);
+			appConfigManager.edit()
+					.iAmInfected(false)
+					.iAmInfectedIsResettable(false)
+					.apply();
 			BroadcastHelper.sendUpdateBroadcast(context);
 		} else {
 			throw new IllegalStateException("InfectionStatus can only be reset if getIAmInfectedIsResettable() returns true");
@@ -407,6 +441,30 @@ public class DP3T {
 		return userAgent;
 	}
 
+	/**
+	 * Enables gzip compression of the request bodies sent to the report backend. Only enable this if the backend accepts
+	 * requests with Content-Encoding gzip.
+	 */
+	public static void setReportRequestCompressionEnabled(boolean enabled) {
+		DP3T.reportRequestCompressionEnabled = enabled;
+	}
+
+	public static boolean isReportRequestCompressionEnabled() {
+		return reportRequestCompressionEnabled;
+	}
+
+	/**
+	 * Sets a listener that receives the stage timings and transferred bytes of every executed key sync, or null to remove
+	 * it. Without a listener no metrics are collected.
+	 */
+	public static void setSyncMetricsListener(SyncMetricsListener syncMetricsListener) {
+		DP3T.syncMetricsListener = syncMetricsListener;
+	}
+
+	public static SyncMetricsListener getSyncMetricsListener() {
+		return syncMetricsListener;
+	}
+
 	public static void setSyncErrorGracePeriod(long gracePeriodMillis) {
 		SyncErrorState.getInstance().setSyncErrorGracePeriod(gracePeriodMillis);
 	}
@@ -424,10 +482,54 @@ public class DP3T {
 		checkInit();
 
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
-		appConfigManager.setAttenuationThresholds(attenuationThresholdLow, attenuationThresholdMedium);
-		appConfigManager.setAttenuationFactorLow(attenuationFactorLow);
-		appConfigManager.setAttenuationFactorMedium(attenuationFactorMedium);
-		appConfigManager.setMinDurationForExposure(minDurationForExposure);
+		appConfigManager.edit()
+				.attenuationThresholds(attenuationThresholdLow, attenuationThresholdMedium)
+				.attenuationFactorLow(attenuationFactorLow)
+				.attenuationFactorMedium(attenuationFactorMedium)
+				.minDurationForExposure(minDurationForExposure)
+				.apply();
+	}
+
+	/**
+	 * Replaces the scoring defined by {@link #setMatchingParameters} with a custom risk scorer, or restores it if null. Like
+	 * the listeners, the scorer itself is not persisted and has to be set on every app start, e.g. in
+	 * Application.onCreate. Only its signature is stored: matching is postponed instead of starting over with other scorers
+	 * while the scorers set by the app are not available yet.
+	 */
+	public static void setRiskScorer(Context context, @Nullable RiskScorer riskScorer) {
+		DP3T.riskScorer = riskScorer;
+		storeRiskScorerSignature(context);
+	}
+
+	@Nullable
+	public static RiskScorer getRiskScorer() {
+		return riskScorer;
+	}
+
+	/**
+	 * Evaluates the given risk scorers in the same pass over the exposure windows as the active scorer. Their results are
+	 * only reported to the listener and do not create exposure days.
+	 */
+	public static void setCandidateRiskScorers(Context context, @NonNull List<RiskScorer> candidateRiskScorers,
+			@Nullable CandidateRiskScorerListener candidateRiskScorerListener) {
+		DP3T.candidateRiskScorers = new ArrayList<>(candidateRiskScorers);
+		DP3T.candidateRiskScorerListener = candidateRiskScorerListener;
+		storeRiskScorerSignature(context);
+	}
+
+	@NonNull
+	public static List<RiskScorer> getCandidateRiskScorers() {
+		return candidateRiskScorers;
+	}
+
+	@Nullable
+	public static CandidateRiskScorerListener getCandidateRiskScorerListener() {
+		return candidateRiskScorerListener;
+	}
+
+	private static void storeRiskScorerSignature(Context context) {
+		AppConfigManager.getInstance(context).setRiskScorerSignature(
+				ExposureWindowMatchingWorker.getRiskScorerSignature(riskScorer, candidateRiskScorers));
 	}
 
 	/**
@@ -477,9 +579,11 @@ public class DP3T {
 		}
 
 		appConfigManager.clearPreferences();
+		storeRiskScorerSignature(context);
 		ExposureDayStorage.getInstance(context).clear();
 		PendingKeyUploadStorage.getInstance(context).clear();
 		ErrorNotificationStorage.getInstance(context).clear();
+		KeyBundleLedger.getInstance(context).clear();
 		Logger.clear();
 	}
 
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk;
+
+import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
+
+/**
+ * Scores the exposure windows of a day. Every scorer owns {@link #getStateSize()} accumulators per day, starting at the
+ * given offset of the day state array. The state of a day is persisted between matching runs, so every window is only
+ * added once.
+ */
+public interface RiskScorer {
+
+	/**
+	 * Identifies the model and its parameters. The persisted day states are discarded and all windows are scored again when
+	 * the signature changes.
+	 */
+	String getSignature();
+
+	int getStateSize();
+
+	/**
+	 * Called for every exposure window on the matching thread. Implementations should not allocate.
+	 */
+	void addExposureWindow(ExposureWindow exposureWindow, double[] dayState, int offset);
+
+	boolean isExposureLimitReached(double[] dayState, int offset);
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.backend;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compresses request bodies with gzip and sets the Content-Encoding header accordingly. Only use this for backends that
+ * accept gzip encoded requests.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+
+	private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
+	@NonNull
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		RequestBody body = request.body();
+		if (body == null || request.header(HEADER_CONTENT_ENCODING) != null) {
+			return chain.proceed(request);
+		}
+
+		Request compressedRequest = request.newBuilder()
+				.header(HEADER_CONTENT_ENCODING, "gzip")
+				.method(request.method(), gzip(body))
+				.build();
+		return chain.proceed(compressedRequest);
+	}
+
+	private static RequestBody gzip(RequestBody body) throws IOException {
+		// the compressed body is buffered to be able to send a Content-Length, the report requests are small
+		Buffer compressed = new Buffer();
+		try (BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed))) {
+			body.writeTo(gzipSink);
+		}
+		MediaType contentType = body.contentType();
+		return RequestBody.create(contentType, compressed.readByteString());
+	}
+
+}
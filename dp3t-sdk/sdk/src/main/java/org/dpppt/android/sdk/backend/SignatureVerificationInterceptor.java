@@ -12,23 +12,28 @@ package org.dpppt.android.sdk.backend;
 import androidx.annotation.NonNull;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.dpppt.android.sdk.util.SignatureUtil;
 
 import okhttp3.Interceptor;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 import okio.BufferedSource;
+import okio.ForwardingSource;
 import okio.Okio;
+import okio.Source;
 
 public class SignatureVerificationInterceptor implements Interceptor {
 
 	private final PublicKey publicKey;
+	private final AtomicLong verificationNanos = new AtomicLong();
 
 	public SignatureVerificationInterceptor(PublicKey publicKey) {
 		this.publicKey = publicKey;
@@ -47,6 +52,12 @@ public class SignatureVerificationInterceptor implements Interceptor {
 			return response;
 		}
 
+		if (response.code() == HttpURLConnection.HTTP_PARTIAL) {
+			// the signature covers the whole content, a range response can only be verified by the caller once it has
+			// been joined with the previously downloaded bytes
+			return response;
+		}
+
 		String jwsHeader = response.headers().get(SignatureUtil.HTTP_HEADER_JWS);
 		if (jwsHeader == null) {
 			throw new SignatureException("JWS header not found");
@@ -56,36 +67,93 @@ public class SignatureVerificationInterceptor implements Interceptor {
 			throw new SignatureException("Public key not specified");
 		}
 
+		long start = System.nanoTime();
 		byte[] signedContentHash = SignatureUtil.getVerifiedContentHash(jwsHeader, publicKey);
+		verificationNanos.addAndGet(System.nanoTime() - start);
 
 		ResponseBody body = response.body();
-		BufferedSource responseBuffer = Okio.buffer(Okio.source(body.byteStream()));
-
-		byte[] actualContentHash;
-		try {
-			MessageDigest digest = MessageDigest.getInstance(SignatureUtil.HASH_ALGO);
-			try (InputStream bodyStream = responseBuffer.peek().inputStream()) {
-				byte[] buffer = new byte[1024];
-				int len;
-				while ((len = bodyStream.read(buffer)) != -1) {
-					digest.update(buffer, 0, len);
-				}
-			}
-			actualContentHash = digest.digest();
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		}
-
-		if (!Arrays.equals(actualContentHash, signedContentHash)) {
-			throw new SignatureException("Signature mismatch");
-		}
+		BufferedSource verifyingSource =
+				Okio.buffer(new ContentHashVerifyingSource(body.source(), signedContentHash, verificationNanos));
 
 		return response.newBuilder()
 				.body(ResponseBody.create(
 						body.contentType(),
 						body.contentLength(),
-						responseBuffer)
+						verifyingSource)
 				).build();
 	}
 
+	/**
+	 * @return the total time spent verifying JWS headers and hashing response bodies by this interceptor
+	 */
+	public long getVerificationNanos() {
+		return verificationNanos.get();
+	}
+
+
+	/**
+	 * Hashes the body while it is being consumed and verifies the hash against the signed content hash once the end of
+	 * the stream is reached. The body is never buffered as a whole, a {@link SignatureException} is thrown from the read
+	 * that hits the end of the stream if the content does not match the signature.
+	 */
+	private static class ContentHashVerifyingSource extends ForwardingSource {
+
+		private final MessageDigest digest;
+		private final byte[] signedContentHash;
+		private final AtomicLong verificationNanos;
+		private final Buffer.UnsafeCursor cursor = new Buffer.UnsafeCursor();
+		private boolean verified = false;
+
+		ContentHashVerifyingSource(Source delegate, byte[] signedContentHash, AtomicLong verificationNanos) {
+			super(delegate);
+			this.signedContentHash = signedContentHash;
+			this.verificationNanos = verificationNanos;
+			try {
+				digest = MessageDigest.getInstance(SignatureUtil.HASH_ALGO);
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+			long read = super.read(sink, byteCount);
+			long start = System.nanoTime();
+			try {
+				if (read == -1) {
+					verify();
+					return -1;
+				}
+				updateDigest(sink, sink.size() - read, read);
+				return read;
+			} finally {
+				verificationNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		private void updateDigest(Buffer sink, long offset, long byteCount) {
+			// hash the segments of the sink in place instead of copying the read bytes out
+			try (Buffer.UnsafeCursor cursor = sink.readUnsafe(this.cursor)) {
+				cursor.seek(offset);
+				while (byteCount > 0) {
+					int len = (int) Math.min(cursor.end - cursor.start, byteCount);
+					digest.update(cursor.data, cursor.start, len);
+					byteCount -= len;
+					cursor.next();
+				}
+			}
+		}
+
+		private void verify() {
+			if (verified) {
+				return;
+			}
+			verified = true;
+			if (!Arrays.equals(digest.digest(), signedContentHash)) {
+				throw new SignatureException("Signature mismatch");
+			}
+		}
+
+	}
+
 }
@@ -13,6 +13,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import org.dpppt.android.sdk.internal.backend.BackendReportRepository;
+import org.dpppt.android.sdk.internal.storage.models.KeyBundleValidators;
+import org.dpppt.android.sdk.internal.storage.models.PartialKeyFileDownload;
 import org.dpppt.android.sdk.internal.util.Json;
 import org.dpppt.android.sdk.models.ApplicationInfo;
 
@@ -36,6 +38,9 @@ public class AppConfigManager {
 	private static final String PREF_I_AM_INFECTED_IS_RESETTABLE = "IAmInfectedIsResettable";
 	private static final String PREF_LAST_SYNC_CALL_TIME = "lastSyncCallTime";
 	private static final String PREF_LAST_KEY_BUNDLE_TAG = "lastKeyBundleTag";
+	private static final String PREF_PARTIAL_KEY_FILE_DOWNLOAD = "partialKeyFileDownload";
+	private static final String PREF_KEY_BUNDLE_EXPIRES_AT = "keyBundleExpiresAt";
+	private static final String PREF_KEY_BUNDLE_VALIDATORS = "keyBundleValidators";
 	private static final String PREF_DEV_HISTORY = "devHistory";
 	private static final String PREF_EN_MODULE_VERSION = "enModuleVersion";
 	private static final String PREF_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE = "numberOfDaysToConsiderForExposure";
@@ -51,61 +56,97 @@ public class AppConfigManager {
 	private static final float DEFAULT_ATTENUATION_FACTOR_MEDIUM = 0.5f;
 	private static final int DEFAULT_MIN_DURATION_FOR_EXPOSURE = 15;
 	private static final String PREF_MIN_DURATION_FOR_EXPOSURE = "minDurationForExposure";
+	private static final String PREF_RISK_SCORER_SIGNATURE = "riskScorerSignature";
 	public static final int DEFAULT_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE = 10;
 	public static final int DEFAULT_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS = 14;
 
 	private SharedPreferences sharedPrefs;
+	private volatile Snapshot snapshot;
 
 	private AppConfigManager(Context context) {
 		sharedPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+		snapshot = new Snapshot(sharedPrefs, parseApplicationInfo(), parseKeyBundleValidators(), parsePartialKeyFileDownload());
+	}
+
+	/**
+	 * The current values as an immutable object, for code that reads several values or reads them in a loop.
+	 */
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	private ApplicationInfo parseApplicationInfo() {
+		return Json.fromJson(sharedPrefs.getString(PREF_APPLICATION, "{}"), ApplicationInfo.class);
+	}
+
+	private KeyBundleValidators parseKeyBundleValidators() {
+		String json = sharedPrefs.getString(PREF_KEY_BUNDLE_VALIDATORS, null);
+		return json == null ? null : Json.safeFromJson(json, KeyBundleValidators.class, () -> null);
+	}
+
+	private PartialKeyFileDownload parsePartialKeyFileDownload() {
+		String json = sharedPrefs.getString(PREF_PARTIAL_KEY_FILE_DOWNLOAD, null);
+		return json == null ? null : Json.safeFromJson(json, PartialKeyFileDownload.class, () -> null);
+	}
+
+	/**
+	 * Rebuilds the snapshot after a write. The JSON values are only parsed again if they were written.
+	 */
+	private synchronized void updateSnapshot(boolean applicationInfoChanged, boolean downloadStateChanged) {
+		ApplicationInfo applicationInfo = applicationInfoChanged ? parseApplicationInfo() : snapshot.applicationInfo;
+		KeyBundleValidators keyBundleValidators =
+				downloadStateChanged ? parseKeyBundleValidators() : snapshot.keyBundleValidators;
+		PartialKeyFileDownload partialKeyFileDownload =
+				downloadStateChanged ? parsePartialKeyFileDownload() : snapshot.partialKeyFileDownload;
+		snapshot = new Snapshot(sharedPrefs, applicationInfo, keyBundleValidators, partialKeyFileDownload);
 	}
 
 	public void setManualApplicationInfo(ApplicationInfo applicationInfo) {
-		sharedPrefs.edit().putString(PREF_APPLICATION, Json.toJson(applicationInfo)).apply();
+		edit().applicationInfo(applicationInfo).apply();
 	}
 
 	public ApplicationInfo getAppConfig() {
-		return Json.fromJson(sharedPrefs.getString(PREF_APPLICATION, "{}"), ApplicationInfo.class);
+		return snapshot.applicationInfo;
 	}
 
 	public void setTracingEnabled(boolean enabled) {
-		sharedPrefs.edit().putBoolean(PREF_TRACING_ENABLED, enabled).apply();
+		edit().tracingEnabled(enabled).apply();
 	}
 
 	public boolean isTracingEnabled() {
-		return sharedPrefs.getBoolean(PREF_TRACING_ENABLED, false);
+		return snapshot.tracingEnabled;
 	}
 
 	public void setLastSyncDate(long lastSyncDate) {
-		sharedPrefs.edit().putLong(PREF_LAST_SYNC_DATE, lastSyncDate).apply();
+		edit().lastSyncDate(lastSyncDate).apply();
 	}
 
 	public long getLastSyncDate() {
-		return sharedPrefs.getLong(PREF_LAST_SYNC_DATE, 0);
+		return snapshot.lastSyncDate;
 	}
 
 	public void setLastSyncNetworkSuccess(boolean success) {
-		sharedPrefs.edit().putBoolean(PREF_LAST_SYNC_NET_SUCCESS, success).apply();
+		edit().lastSyncNetworkSuccess(success).apply();
 	}
 
 	public boolean getLastSyncNetworkSuccess() {
-		return sharedPrefs.getBoolean(PREF_LAST_SYNC_NET_SUCCESS, true);
+		return snapshot.lastSyncNetworkSuccess;
 	}
 
 	public boolean getIAmInfected() {
-		return sharedPrefs.getBoolean(PREF_I_AM_INFECTED, false);
+		return snapshot.iAmInfected;
 	}
 
 	public void setIAmInfected(boolean infected) {
-		sharedPrefs.edit().putBoolean(PREF_I_AM_INFECTED, infected).apply();
+		edit().iAmInfected(infected).apply();
 	}
 
 	public void setIAmInfectedIsResettable(boolean resettable) {
-		sharedPrefs.edit().putBoolean(PREF_I_AM_INFECTED_IS_RESETTABLE, resettable).apply();
+		edit().iAmInfectedIsResettable(resettable).apply();
 	}
 
 	public boolean getIAmInfectedIsResettable() {
-		return sharedPrefs.getBoolean(PREF_I_AM_INFECTED_IS_RESETTABLE, false);
+		return snapshot.iAmInfectedIsResettable;
 	}
 
 	public BackendReportRepository getBackendReportRepository(Context context) throws IllegalStateException {
@@ -115,94 +156,355 @@ public class AppConfigManager {
 
 	public void clearPreferences() {
 		sharedPrefs.edit().clear().apply();
+		updateSnapshot(true, true);
+		TracingStatusCache.invalidate();
 	}
 
 	public int getMinDurationForExposure() {
-		return sharedPrefs.getInt(PREF_MIN_DURATION_FOR_EXPOSURE, DEFAULT_MIN_DURATION_FOR_EXPOSURE);
+		return snapshot.minDurationForExposure;
 	}
 
 	public void setMinDurationForExposure(int minDuration) {
-		sharedPrefs.edit().putInt(PREF_MIN_DURATION_FOR_EXPOSURE, minDuration).apply();
+		edit().minDurationForExposure(minDuration).apply();
 	}
 
 	public int getAttenuationThresholdLow() {
-		return sharedPrefs.getInt(PREF_ATTENUATION_THRESHOLD_LOW, DEFAULT_ATTENUATION_THRESHOLD_LOW);
+		return snapshot.attenuationThresholdLow;
 	}
 
 	public int getAttenuationThresholdMedium() {
-		return sharedPrefs.getInt(PREF_ATTENUATION_THRESHOLD_MEDIUM, DEFAULT_ATTENUATION_THRESHOLD_MEDIUM);
+		return snapshot.attenuationThresholdMedium;
 	}
 
 	public void setAttenuationThresholds(int thresholdLow, int thresholdMedium) {
-		if (thresholdLow >= thresholdMedium) {
-			throw new IllegalArgumentException("Illegal Arguments: thresholdLow must be smaller than thresholdMedium");
-		}
-		sharedPrefs.edit().putInt(PREF_ATTENUATION_THRESHOLD_LOW, thresholdLow).apply();
-		sharedPrefs.edit().putInt(PREF_ATTENUATION_THRESHOLD_MEDIUM, thresholdMedium).apply();
+		edit().attenuationThresholds(thresholdLow, thresholdMedium).apply();
 	}
 
 	public float getAttenuationFactorLow() {
-		return sharedPrefs.getFloat(PREF_ATTENUATION_FACTOR_LOW, DEFAULT_ATTENUATION_FACTOR_LOW);
+		return snapshot.attenuationFactorLow;
 	}
 
 	public void setAttenuationFactorLow(float factor) {
-		sharedPrefs.edit().putFloat(PREF_ATTENUATION_FACTOR_LOW, factor).apply();
+		edit().attenuationFactorLow(factor).apply();
 	}
 
 	public float getAttenuationFactorMedium() {
-		return sharedPrefs.getFloat(PREF_ATTENUATION_FACTOR_MEDIUM, DEFAULT_ATTENUATION_FACTOR_MEDIUM);
+		return snapshot.attenuationFactorMedium;
 	}
 
 	public void setAttenuationFactorMedium(float factor) {
-		sharedPrefs.edit().putFloat(PREF_ATTENUATION_FACTOR_MEDIUM, factor).apply();
+		edit().attenuationFactorMedium(factor).apply();
 	}
 
 	public int getNumberOfDaysToConsiderForExposure() {
-		return sharedPrefs.getInt(PREF_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE, DEFAULT_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE);
+		return snapshot.numberOfDaysToConsiderForExposure;
 	}
 
 	public void setNumberOfDaysToConsiderForExposure(int days) {
-		sharedPrefs.edit().putInt(PREF_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE, days).apply();
+		edit().numberOfDaysToConsiderForExposure(days).apply();
 	}
 
 	public int getNumberOfDaysToKeepExposedDays() {
-		return sharedPrefs.getInt(PREF_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS, DEFAULT_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS);
+		return snapshot.numberOfDaysToKeepExposedDays;
 	}
 
 	public void setNumberOfDaysToKeepExposedDays(int days) {
-		sharedPrefs.edit().putInt(PREF_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS, days).apply();
+		edit().numberOfDaysToKeepExposedDays(days).apply();
+	}
+
+	/**
+	 * @return the signature of the risk scorers last set by the app, null if only the matching parameters are used
+	 */
+	public String getRiskScorerSignature() {
+		return snapshot.riskScorerSignature;
+	}
+
+	public void setRiskScorerSignature(String signature) {
+		edit().riskScorerSignature(signature).apply();
 	}
 
 	public long getLastSynCallTime() {
-		return sharedPrefs.getLong(PREF_LAST_SYNC_CALL_TIME, 0);
+		return snapshot.lastSyncCallTime;
 	}
 
 	public void setLastSyncCallTime(long time) {
-		sharedPrefs.edit().putLong(PREF_LAST_SYNC_CALL_TIME, time).apply();
+		edit().lastSyncCallTime(time).apply();
 	}
 
 	public String getLastKeyBundleTag() {
-		return sharedPrefs.getString(PREF_LAST_KEY_BUNDLE_TAG, null);
+		return snapshot.lastKeyBundleTag;
 	}
 
 	public void setLastKeyBundleTag(String tag) {
-		sharedPrefs.edit().putString(PREF_LAST_KEY_BUNDLE_TAG, tag).apply();
+		edit().lastKeyBundleTag(tag).apply();
+	}
+
+	public long getKeyBundleExpiresAt() {
+		return snapshot.keyBundleExpiresAt;
+	}
+
+	public void setKeyBundleExpiresAt(long time) {
+		edit().keyBundleExpiresAt(time).apply();
+	}
+
+	public KeyBundleValidators getKeyBundleValidators() {
+		return snapshot.keyBundleValidators;
+	}
+
+	public void setKeyBundleValidators(KeyBundleValidators keyBundleValidators) {
+		edit().keyBundleValidators(keyBundleValidators).apply();
+	}
+
+	public PartialKeyFileDownload getPartialKeyFileDownload() {
+		return snapshot.partialKeyFileDownload;
+	}
+
+	public void setPartialKeyFileDownload(PartialKeyFileDownload partialKeyFileDownload) {
+		edit().partialKeyFileDownload(partialKeyFileDownload).apply();
 	}
 
 	public void setDevHistory(boolean devHistory) {
-		sharedPrefs.edit().putBoolean(PREF_DEV_HISTORY, devHistory).apply();
+		edit().devHistory(devHistory).apply();
 	}
 
 	public boolean getDevHistory() {
-		return sharedPrefs.getBoolean(PREF_DEV_HISTORY, false);
+		return snapshot.devHistory;
 	}
 
 	public void setENModuleVersion(long version) {
-		sharedPrefs.edit().putLong(PREF_EN_MODULE_VERSION, version).apply();
+		edit().enModuleVersion(version).apply();
 	}
 
 	public long getENModuleVersion() {
-		return sharedPrefs.getLong(PREF_EN_MODULE_VERSION, 0);
+		return snapshot.enModuleVersion;
+	}
+
+	/**
+	 * Collects several changes and writes them to disk together, either all or none of them.
+	 */
+	public Editor edit() {
+		return new Editor(sharedPrefs.edit());
+	}
+
+	public class Editor {
+
+		private final SharedPreferences.Editor editor;
+		private boolean statusChanged = false;
+		private boolean applicationInfoChanged = false;
+		private boolean downloadStateChanged = false;
+
+		private Editor(SharedPreferences.Editor editor) {
+			this.editor = editor;
+		}
+
+		public Editor applicationInfo(ApplicationInfo applicationInfo) {
+			editor.putString(PREF_APPLICATION, Json.toJson(applicationInfo));
+			applicationInfoChanged = true;
+			return this;
+		}
+
+		public Editor tracingEnabled(boolean enabled) {
+			editor.putBoolean(PREF_TRACING_ENABLED, enabled);
+			statusChanged = true;
+			return this;
+		}
+
+		public Editor lastSyncDate(long lastSyncDate) {
+			editor.putLong(PREF_LAST_SYNC_DATE, lastSyncDate);
+			statusChanged = true;
+			return this;
+		}
+
+		public Editor lastSyncNetworkSuccess(boolean success) {
+			editor.putBoolean(PREF_LAST_SYNC_NET_SUCCESS, success);
+			statusChanged = true;
+			return this;
+		}
+
+		public Editor iAmInfected(boolean infected) {
+			editor.putBoolean(PREF_I_AM_INFECTED, infected);
+			statusChanged = true;
+			return this;
+		}
+
+		public Editor iAmInfectedIsResettable(boolean resettable) {
+			editor.putBoolean(PREF_I_AM_INFECTED_IS_RESETTABLE, resettable);
+			return this;
+		}
+
+		public Editor minDurationForExposure(int minDuration) {
+			editor.putInt(PREF_MIN_DURATION_FOR_EXPOSURE, minDuration);
+			return this;
+		}
+
+		public Editor attenuationThresholds(int thresholdLow, int thresholdMedium) {
+			if (thresholdLow >= thresholdMedium) {
+				throw new IllegalArgumentException("Illegal Arguments: thresholdLow must be smaller than thresholdMedium");
+			}
+			editor.putInt(PREF_ATTENUATION_THRESHOLD_LOW, thresholdLow);
+			editor.putInt(PREF_ATTENUATION_THRESHOLD_MEDIUM, thresholdMedium);
+			return this;
+		}
+
+		public Editor attenuationFactorLow(float factor) {
+			editor.putFloat(PREF_ATTENUATION_FACTOR_LOW, factor);
+			return this;
+		}
+
+		public Editor attenuationFactorMedium(float factor) {
+			editor.putFloat(PREF_ATTENUATION_FACTOR_MEDIUM, factor);
+			return this;
+		}
+
+		public Editor numberOfDaysToConsiderForExposure(int days) {
+			editor.putInt(PREF_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE, days);
+			return this;
+		}
+
+		public Editor numberOfDaysToKeepExposedDays(int days) {
+			editor.putInt(PREF_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS, days);
+			statusChanged = true;
+			return this;
+		}
+
+		public Editor riskScorerSignature(String signature) {
+			if (signature == null) {
+				editor.remove(PREF_RISK_SCORER_SIGNATURE);
+			} else {
+				editor.putString(PREF_RISK_SCORER_SIGNATURE, signature);
+			}
+			return this;
+		}
+
+		public Editor lastSyncCallTime(long time) {
+			editor.putLong(PREF_LAST_SYNC_CALL_TIME, time);
+			return this;
+		}
+
+		public Editor lastKeyBundleTag(String tag) {
+			editor.putString(PREF_LAST_KEY_BUNDLE_TAG, tag);
+			return this;
+		}
+
+		public Editor keyBundleExpiresAt(long time) {
+			editor.putLong(PREF_KEY_BUNDLE_EXPIRES_AT, time);
+			return this;
+		}
+
+		public Editor keyBundleValidators(KeyBundleValidators keyBundleValidators) {
+			if (keyBundleValidators == null) {
+				editor.remove(PREF_KEY_BUNDLE_VALIDATORS);
+			} else {
+				editor.putString(PREF_KEY_BUNDLE_VALIDATORS, Json.toJson(keyBundleValidators));
+			}
+			downloadStateChanged = true;
+			return this;
+		}
+
+		public Editor partialKeyFileDownload(PartialKeyFileDownload partialKeyFileDownload) {
+			if (partialKeyFileDownload == null) {
+				editor.remove(PREF_PARTIAL_KEY_FILE_DOWNLOAD);
+			} else {
+				editor.putString(PREF_PARTIAL_KEY_FILE_DOWNLOAD, Json.toJson(partialKeyFileDownload));
+			}
+			downloadStateChanged = true;
+			return this;
+		}
+
+		public Editor devHistory(boolean devHistory) {
+			editor.putBoolean(PREF_DEV_HISTORY, devHistory);
+			return this;
+		}
+
+		public Editor enModuleVersion(long version) {
+			editor.putLong(PREF_EN_MODULE_VERSION, version);
+			return this;
+		}
+
+		/**
+		 * Writes the changes synchronously in a single file write, to be used from background threads.
+		 *
+		 * @return true if the changes were successfully written
+		 */
+		public boolean commit() {
+			boolean success = editor.commit();
+			updateSnapshot(applicationInfoChanged, downloadStateChanged);
+			invalidateStatus();
+			return success;
+		}
+
+		/**
+		 * Applies the changes in memory immediately and writes them asynchronously in a single file write.
+		 */
+		public void apply() {
+			editor.apply();
+			updateSnapshot(applicationInfoChanged, downloadStateChanged);
+			invalidateStatus();
+		}
+
+		private void invalidateStatus() {
+			if (statusChanged) {
+				TracingStatusCache.invalidate();
+			}
+		}
+
+	}
+
+	/**
+	 * Immutable copy of the values, rebuilt on every write so that reads neither touch the preferences map nor parse JSON.
+	 */
+	public static final class Snapshot {
+
+		public final ApplicationInfo applicationInfo;
+		public final boolean tracingEnabled;
+		public final long lastSyncDate;
+		public final boolean lastSyncNetworkSuccess;
+		public final boolean iAmInfected;
+		public final boolean iAmInfectedIsResettable;
+		public final int minDurationForExposure;
+		public final int attenuationThresholdLow;
+		public final int attenuationThresholdMedium;
+		public final float attenuationFactorLow;
+		public final float attenuationFactorMedium;
+		public final int numberOfDaysToConsiderForExposure;
+		public final int numberOfDaysToKeepExposedDays;
+		public final String riskScorerSignature;
+		public final long lastSyncCallTime;
+		public final String lastKeyBundleTag;
+		public final long keyBundleExpiresAt;
+		public final KeyBundleValidators keyBundleValidators;
+		public final PartialKeyFileDownload partialKeyFileDownload;
+		public final boolean devHistory;
+		public final long enModuleVersion;
+
+		private Snapshot(SharedPreferences sharedPrefs, ApplicationInfo applicationInfo,
+				KeyBundleValidators keyBundleValidators, PartialKeyFileDownload partialKeyFileDownload) {
+			this.applicationInfo = applicationInfo;
+			this.keyBundleValidators = keyBundleValidators;
+			this.partialKeyFileDownload = partialKeyFileDownload;
+			tracingEnabled = sharedPrefs.getBoolean(PREF_TRACING_ENABLED, false);
+			lastSyncDate = sharedPrefs.getLong(PREF_LAST_SYNC_DATE, 0);
+			lastSyncNetworkSuccess = sharedPrefs.getBoolean(PREF_LAST_SYNC_NET_SUCCESS, true);
+			iAmInfected = sharedPrefs.getBoolean(PREF_I_AM_INFECTED, false);
+			iAmInfectedIsResettable = sharedPrefs.getBoolean(PREF_I_AM_INFECTED_IS_RESETTABLE, false);
+			minDurationForExposure = sharedPrefs.getInt(PREF_MIN_DURATION_FOR_EXPOSURE, DEFAULT_MIN_DURATION_FOR_EXPOSURE);
+			attenuationThresholdLow = sharedPrefs.getInt(PREF_ATTENUATION_THRESHOLD_LOW, DEFAULT_ATTENUATION_THRESHOLD_LOW);
+			attenuationThresholdMedium =
+					sharedPrefs.getInt(PREF_ATTENUATION_THRESHOLD_MEDIUM, DEFAULT_ATTENUATION_THRESHOLD_MEDIUM);
+			attenuationFactorLow = sharedPrefs.getFloat(PREF_ATTENUATION_FACTOR_LOW, DEFAULT_ATTENUATION_FACTOR_LOW);
+			attenuationFactorMedium = sharedPrefs.getFloat(PREF_ATTENUATION_FACTOR_MEDIUM, DEFAULT_ATTENUATION_FACTOR_MEDIUM);
+			numberOfDaysToConsiderForExposure = sharedPrefs.getInt(PREF_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE,
+					DEFAULT_NUMBER_OF_DAYS_TO_CONSIDER_FOR_EXPOSURE);
+			numberOfDaysToKeepExposedDays =
+					sharedPrefs.getInt(PREF_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS, DEFAULT_NUMBER_OF_DAYS_TO_KEEP_EXPOSED_DAYS);
+			riskScorerSignature = sharedPrefs.getString(PREF_RISK_SCORER_SIGNATURE, null);
+			lastSyncCallTime = sharedPrefs.getLong(PREF_LAST_SYNC_CALL_TIME, 0);
+			lastKeyBundleTag = sharedPrefs.getString(PREF_LAST_KEY_BUNDLE_TAG, null);
+			keyBundleExpiresAt = sharedPrefs.getLong(PREF_KEY_BUNDLE_EXPIRES_AT, 0);
+			devHistory = sharedPrefs.getBoolean(PREF_DEV_HISTORY, false);
+			enModuleVersion = sharedPrefs.getLong(PREF_EN_MODULE_VERSION, 0);
+		}
+
 	}
 
 }
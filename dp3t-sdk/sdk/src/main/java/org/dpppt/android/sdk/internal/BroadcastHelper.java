@@ -18,6 +18,7 @@ import org.dpppt.android.sdk.DP3T;
 public class BroadcastHelper {
 
 	public static void sendUpdateBroadcast(Context context) {
+		TracingStatusCache.invalidate();
 		Intent intent = new Intent(DP3T.ACTION_UPDATE);
 		context.sendBroadcast(intent);
 	}
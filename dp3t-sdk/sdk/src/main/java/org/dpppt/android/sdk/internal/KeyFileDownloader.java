@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.backend.SignatureException;
+import org.dpppt.android.sdk.internal.backend.BackendBucketRepository;
+import org.dpppt.android.sdk.internal.logger.Logger;
+import org.dpppt.android.sdk.internal.storage.models.KeyBundleValidators;
+import org.dpppt.android.sdk.internal.storage.models.PartialKeyFileDownload;
+import org.dpppt.android.sdk.util.SignatureUtil;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+import retrofit2.Response;
+
+import static org.dpppt.android.sdk.internal.SyncWorker.KEY_BUNDLE_TAG_HEADER;
+
+/**
+ * Downloads the key bundle for a lastKeyBundleTag into a keyfile in the cache directory. If a download is interrupted the
+ * incomplete file is kept together with its If-Range validator, and the next download for the same lastKeyBundleTag
+ * only requests the missing bytes. A keyfile is only returned once it is complete and its signature has been verified.
+ * The ETag and Last-Modified of a response are returned with the result. Once the caller has stored them after handling
+ * the keys, they are sent as If-None-Match/If-Modified-Since when the same lastKeyBundleTag is requested again.
+ */
+public class KeyFileDownloader {
+
+	private static final String TAG = "KeyFileDownloader";
+
+	static final String KEYFILE_PREFIX = "keyfile_";
+
+	private static final String HEADER_ETAG = "ETag";
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+	private static final String HEADER_CONTENT_RANGE = "Content-Range";
+	private static final String HEADER_EXPIRES = "Expires";
+	private static final String HEADER_DATE = "Date";
+
+	private final Context context;
+	private final BackendBucketRepository bucketRepository;
+	private final PublicKey signaturePublicKey;
+	private final AppConfigManager appConfigManager;
+	private final SyncMetricsCollector metricsCollector;
+
+	public KeyFileDownloader(Context context, BackendBucketRepository bucketRepository, PublicKey signaturePublicKey) {
+		this(context, bucketRepository, signaturePublicKey, null);
+	}
+
+	KeyFileDownloader(Context context, BackendBucketRepository bucketRepository, PublicKey signaturePublicKey,
+			@Nullable SyncMetricsCollector metricsCollector) {
+		this.context = context;
+		this.bucketRepository = bucketRepository;
+		this.signaturePublicKey = signaturePublicKey;
+		this.appConfigManager = AppConfigManager.getInstance(context);
+		this.metricsCollector = metricsCollector;
+	}
+
+	public DownloadResult download(String lastKeyBundleTag) throws Exception {
+		File file = new File(context.getCacheDir(), KEYFILE_PREFIX + lastKeyBundleTag + ".zip");
+
+		PartialKeyFileDownload partialDownload = getResumablePartialDownload(lastKeyBundleTag, file);
+		long rangeStart = partialDownload != null ? file.length() : 0;
+		String ifRange = partialDownload != null ? partialDownload.getIfRangeValidator() : null;
+		KeyBundleValidators validators = partialDownload == null ? getValidators(lastKeyBundleTag) : null;
+
+		long downloadStart = System.nanoTime();
+		Response<ResponseBody> response = bucketRepository.getGaenExposees(lastKeyBundleTag, rangeStart, ifRange,
+				validators != null ? validators.getEtag() : null,
+				validators != null ? validators.getLastModified() : null);
+		Headers headers = response.headers();
+		String keyBundleTag = headers.get(KEY_BUNDLE_TAG_HEADER);
+		long freshnessLifetime = getFreshnessLifetime(response);
+
+		if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null) {
+			if (keyBundleTag == null) {
+				keyBundleTag = validators.getKeyBundleTag();
+			}
+			return new DownloadResult(null, keyBundleTag, freshnessLifetime, true, validators);
+		}
+
+		if (response.code() == HttpURLConnection.HTTP_NO_CONTENT) {
+			discardPartialDownload();
+			return new DownloadResult(null, keyBundleTag, freshnessLifetime, false,
+					getResponseValidators(lastKeyBundleTag, keyBundleTag, headers));
+		}
+
+		if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			throw new IOException("Unexpected 304 response for unconditional request");
+		}
+
+		boolean resumed = response.code() == HttpURLConnection.HTTP_PARTIAL;
+		if (resumed) {
+			if (partialDownload == null || !isExpectedRange(headers, rangeStart) ||
+					(keyBundleTag != null && !keyBundleTag.equals(partialDownload.getKeyBundleTag()))) {
+				response.body().close();
+				discardPartialDownload();
+				throw new IOException("Unexpected partial response for " + file.getName());
+			}
+			Logger.d(TAG, "resuming download of " + file.getName() + " at " + rangeStart);
+		} else {
+			// written on its own before the body, so that a download interrupted by the process being killed can be resumed
+			String validator = getIfRangeValidator(headers);
+			if (validator != null) {
+				appConfigManager.setPartialKeyFileDownload(new PartialKeyFileDownload(lastKeyBundleTag, keyBundleTag, validator,
+						headers.get(SignatureUtil.HTTP_HEADER_JWS), file.getName()));
+			} else {
+				clearPartialDownload();
+			}
+		}
+
+		try {
+			writeBodyToFile(response.body(), file, resumed);
+			if (metricsCollector != null) {
+				metricsCollector.addDownloadNanos(System.nanoTime() - downloadStart);
+			}
+		} catch (IOException e) {
+			if (appConfigManager.getPartialKeyFileDownload() == null) {
+				deleteFile(file);
+			}
+			throw e;
+		} catch (RuntimeException e) {
+			discardPartialDownload();
+			deleteFile(file);
+			throw e;
+		}
+
+		if (resumed) {
+			String signature = headers.get(SignatureUtil.HTTP_HEADER_JWS);
+			verifySignature(file, signature != null ? signature : partialDownload.getSignature());
+		}
+		clearPartialDownload();
+
+		return new DownloadResult(file, keyBundleTag, freshnessLifetime, false,
+				getResponseValidators(lastKeyBundleTag, keyBundleTag, headers));
+	}
+
+	/**
+	 * @return the name of the keyfile that is kept for a future resumption of its download, or null
+	 */
+	@Nullable
+	public String getPartialKeyFileName() {
+		PartialKeyFileDownload partialDownload = appConfigManager.getPartialKeyFileDownload();
+		return partialDownload != null ? partialDownload.getFileName() : null;
+	}
+
+	private KeyBundleValidators getValidators(String lastKeyBundleTag) {
+		KeyBundleValidators validators = appConfigManager.getKeyBundleValidators();
+		if (validators != null && Objects.equals(validators.getRequestKeyBundleTag(), lastKeyBundleTag)) {
+			return validators;
+		}
+		return null;
+	}
+
+	private static KeyBundleValidators getResponseValidators(String lastKeyBundleTag, String keyBundleTag, Headers headers) {
+		String etag = headers.get(HEADER_ETAG);
+		String lastModified = headers.get(HEADER_LAST_MODIFIED);
+		if (etag != null || lastModified != null) {
+			return new KeyBundleValidators(lastKeyBundleTag, keyBundleTag, etag, lastModified);
+		}
+		return null;
+	}
+
+	private PartialKeyFileDownload getResumablePartialDownload(String lastKeyBundleTag, File file) {
+		PartialKeyFileDownload partialDownload = appConfigManager.getPartialKeyFileDownload();
+		if (partialDownload == null) {
+			return null;
+		}
+		if (Objects.equals(partialDownload.getRequestKeyBundleTag(), lastKeyBundleTag) &&
+				file.getName().equals(partialDownload.getFileName()) &&
+				partialDownload.getIfRangeValidator() != null &&
+				file.length() > 0) {
+			return partialDownload;
+		}
+		discardPartialDownload();
+		return null;
+	}
+
+	private void clearPartialDownload() {
+		if (appConfigManager.getPartialKeyFileDownload() != null) {
+			appConfigManager.setPartialKeyFileDownload(null);
+		}
+	}
+
+	private void discardPartialDownload() {
+		PartialKeyFileDownload partialDownload = appConfigManager.getPartialKeyFileDownload();
+		if (partialDownload != null) {
+			deleteFile(new File(context.getCacheDir(), partialDownload.getFileName()));
+			appConfigManager.setPartialKeyFileDownload(null);
+		}
+	}
+
+	private static String getIfRangeValidator(Headers headers) {
+		String etag = headers.get(HEADER_ETAG);
+		if (etag != null && !etag.startsWith("W/")) {
+			// only strong validators can be used for If-Range
+			return etag;
+		}
+		return headers.get(HEADER_LAST_MODIFIED);
+	}
+
+	/**
+	 * @return how long the response is fresh according to its Cache-Control max-age or Expires header in milliseconds, or -1
+	 */
+	private static long getFreshnessLifetime(Response<ResponseBody> response) {
+		CacheControl cacheControl = response.raw().cacheControl();
+		if (cacheControl.maxAgeSeconds() >= 0) {
+			return TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+		}
+		Date expires = response.headers().getDate(HEADER_EXPIRES);
+		if (expires != null) {
+			Date date = response.headers().getDate(HEADER_DATE);
+			long responseTime = date != null ? date.getTime() : response.raw().receivedResponseAtMillis();
+			return Math.max(0, expires.getTime() - responseTime);
+		}
+		return -1;
+	}
+
+	private static boolean isExpectedRange(Headers headers, long rangeStart) {
+		String contentRange = headers.get(HEADER_CONTENT_RANGE);
+		return contentRange != null && contentRange.startsWith("bytes " + rangeStart + "-");
+	}
+
+	private void writeBodyToFile(ResponseBody body, File file, boolean append) throws IOException {
+		Sink fileSink = append ? Okio.appendingSink(file) : Okio.sink(file);
+		if (metricsCollector != null) {
+			fileSink = new ForwardingSink(fileSink) {
+				@Override
+				public void write(@NonNull Buffer source, long byteCount) throws IOException {
+					long start = System.nanoTime();
+					super.write(source, byteCount);
+					metricsCollector.addFileWriteNanos(System.nanoTime() - start);
+				}
+			};
+		}
+		try (BufferedSink sink = Okio.buffer(fileSink);
+			 BufferedSource source = body.source()) {
+			sink.writeAll(source);
+		}
+	}
+
+	private void verifySignature(File file, String jws) throws IOException {
+		if (signaturePublicKey == null) {
+			return;
+		}
+		if (jws == null) {
+			deleteFile(file);
+			throw new SignatureException("JWS header not found");
+		}
+		long start = System.nanoTime();
+		byte[] signedContentHash = SignatureUtil.getVerifiedContentHash(jws, signaturePublicKey);
+		byte[] contentHash = getContentHash(file);
+		if (metricsCollector != null) {
+			metricsCollector.addSignatureVerificationNanos(System.nanoTime() - start);
+		}
+		if (!Arrays.equals(contentHash, signedContentHash)) {
+			discardPartialDownload();
+			deleteFile(file);
+			throw new SignatureException("Signature mismatch");
+		}
+	}
+
+	private static byte[] getContentHash(File file) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(SignatureUtil.HASH_ALGO);
+			try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+				byte[] buffer = new byte[8 * 1024];
+				int len;
+				while ((len = source.read(buffer)) != -1) {
+					digest.update(buffer, 0, len);
+				}
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void deleteFile(File file) {
+		if (file.exists() && !file.delete()) {
+			Logger.w(TAG, "Unable to delete file " + file.getName());
+		}
+	}
+
+
+	public static class DownloadResult {
+
+		private final File keyFile;
+		private final String keyBundleTag;
+		private final long freshnessLifetime;
+		private final boolean notModified;
+		private final KeyBundleValidators validators;
+
+		private DownloadResult(File keyFile, String keyBundleTag, long freshnessLifetime, boolean notModified,
+				KeyBundleValidators validators) {
+			this.keyFile = keyFile;
+			this.keyBundleTag = keyBundleTag;
+			this.freshnessLifetime = freshnessLifetime;
+			this.notModified = notModified;
+			this.validators = validators;
+		}
+
+		/**
+		 * @return the complete and verified keyfile, or null if there are no new keys
+		 */
+		@Nullable
+		public File getKeyFile() {
+			return keyFile;
+		}
+
+		public String getKeyBundleTag() {
+			return keyBundleTag;
+		}
+
+		/**
+		 * @return the time in milliseconds until the server expects new keys, or -1 if the response did not say
+		 */
+		public long getFreshnessLifetime() {
+			return freshnessLifetime;
+		}
+
+		/**
+		 * @return true if the server answered the conditional request with 304, nothing was downloaded in this case
+		 */
+		public boolean isNotModified() {
+			return notModified;
+		}
+
+		/**
+		 * @return the validators to send with the next request for the same lastKeyBundleTag, or null if the response had
+		 * none. They must only be stored once the keys have been provided, otherwise the next request would get a 304 for
+		 * keys that were never provided.
+		 */
+		@Nullable
+		public KeyBundleValidators getValidators() {
+			return validators;
+		}
+
+	}
+
+}
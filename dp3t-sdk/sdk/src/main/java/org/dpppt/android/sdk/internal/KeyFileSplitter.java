@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.dpppt.android.sdk.internal.logger.Logger;
+
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Splits a downloaded keyfile that contains several export.bin/export.sig pairs (e.g. one per day, stored in separate
+ * directories of the archive) into one keyfile per pair, so they can be handed to the EN framework as a batch of files.
+ * The pairs are written concurrently on a background executor. A keyfile with a single pair is returned unchanged.
+ */
+public class KeyFileSplitter {
+
+	private static final String TAG = "KeyFileSplitter";
+
+	private static final String EXPORT_BIN = "export.bin";
+	private static final String EXPORT_SIG = "export.sig";
+
+	private static final int MAX_THREADS = 4;
+
+	public static List<File> split(File keyFile) throws IOException {
+		ZipFile zipFile;
+		try {
+			zipFile = new ZipFile(keyFile);
+		} catch (ZipException e) {
+			Logger.w(TAG, keyFile.getName() + " is not a zip file, providing it as is");
+			return Collections.singletonList(keyFile);
+		}
+
+		try {
+			List<ExportPair> exportPairs = getExportPairs(zipFile);
+			if (exportPairs.size() <= 1) {
+				return Collections.singletonList(keyFile);
+			}
+			return writeExportPairs(zipFile, keyFile, exportPairs);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private static List<ExportPair> getExportPairs(ZipFile zipFile) {
+		Map<String, ExportPair> exportPairsByDirectory = new TreeMap<>();
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			String name = entry.getName();
+			if (entry.isDirectory()) {
+				continue;
+			}
+			String directory = name.substring(0, name.lastIndexOf('/') + 1);
+			String fileName = name.substring(directory.length());
+			ExportPair exportPair = exportPairsByDirectory.get(directory);
+			if (exportPair == null) {
+				exportPair = new ExportPair();
+				exportPairsByDirectory.put(directory, exportPair);
+			}
+			if (EXPORT_BIN.equals(fileName)) {
+				exportPair.bin = entry;
+			} else if (EXPORT_SIG.equals(fileName)) {
+				exportPair.sig = entry;
+			}
+		}
+
+		List<ExportPair> exportPairs = new ArrayList<>();
+		for (ExportPair exportPair : exportPairsByDirectory.values()) {
+			if (exportPair.bin != null && exportPair.sig != null) {
+				exportPairs.add(exportPair);
+			}
+		}
+		return exportPairs;
+	}
+
+	private static List<File> writeExportPairs(ZipFile zipFile, File keyFile, List<ExportPair> exportPairs)
+			throws IOException {
+		String baseName = keyFile.getName().substring(0, keyFile.getName().length() - ".zip".length());
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(exportPairs.size(), MAX_THREADS));
+		List<File> splitFiles = new ArrayList<>();
+		try {
+			List<Future<File>> futures = new ArrayList<>();
+			for (int i = 0; i < exportPairs.size(); i++) {
+				File splitFile = new File(keyFile.getParentFile(), baseName + "_" + i + ".zip");
+				ExportPair exportPair = exportPairs.get(i);
+				splitFiles.add(splitFile);
+				futures.add(executor.submit(() -> writeExportPair(zipFile, exportPair, splitFile)));
+			}
+			for (Future<File> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			executor.shutdownNow();
+			for (File splitFile : splitFiles) {
+				if (splitFile.exists() && !splitFile.delete()) {
+					Logger.w(TAG, "Unable to delete file " + splitFile.getName());
+				}
+			}
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+		} finally {
+			executor.shutdown();
+		}
+
+		Logger.d(TAG, "split " + keyFile.getName() + " into " + splitFiles.size() + " files");
+		return splitFiles;
+	}
+
+	private static File writeExportPair(ZipFile zipFile, ExportPair exportPair, File target) throws IOException {
+		try (ZipOutputStream zipOut = new ZipOutputStream(Okio.buffer(Okio.sink(target)).outputStream())) {
+			copyEntry(zipFile, exportPair.bin, EXPORT_BIN, zipOut);
+			copyEntry(zipFile, exportPair.sig, EXPORT_SIG, zipOut);
+		}
+		return target;
+	}
+
+	private static void copyEntry(ZipFile zipFile, ZipEntry entry, String name, ZipOutputStream zipOut) throws IOException {
+		zipOut.putNextEntry(new ZipEntry(name));
+		try (InputStream in = zipFile.getInputStream(entry)) {
+			BufferedSink sink = Okio.buffer(Okio.sink(zipOut));
+			sink.writeAll(Okio.source(in));
+			sink.emit();
+		}
+		zipOut.closeEntry();
+	}
+
+
+	private static class ExportPair {
+		private ZipEntry bin;
+		private ZipEntry sig;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.models.SyncMetrics;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+/**
+ * Collects the stage timings of one sync. Only created if a SyncMetricsListener is set, so a sync without listener does
+ * not pay for the bookkeeping.
+ */
+class SyncMetricsCollector {
+
+	private long dnsNanos;
+	private long connectNanos;
+	private long tlsNanos;
+	private long downloadNanos;
+	private long signatureVerificationNanos;
+	private long fileWriteNanos;
+	private long provideDiagnosisKeysNanos;
+	private long cleanupNanos;
+	private long bytesOnWire;
+	private long bytesDecoded;
+
+	EventListener getEventListener() {
+		return new EventListener() {
+			private long dnsStart;
+			private long connectStart;
+			private long secureConnectStart;
+
+			@Override
+			public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+				dnsStart = System.nanoTime();
+			}
+
+			@Override
+			public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+				dnsNanos += System.nanoTime() - dnsStart;
+			}
+
+			@Override
+			public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+				connectStart = System.nanoTime();
+			}
+
+			@Override
+			public void secureConnectStart(@NonNull Call call) {
+				secureConnectStart = System.nanoTime();
+			}
+
+			@Override
+			public void secureConnectEnd(@NonNull Call call, @Nullable Handshake handshake) {
+				tlsNanos += System.nanoTime() - secureConnectStart;
+			}
+
+			@Override
+			public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy,
+					@Nullable Protocol protocol) {
+				connectNanos += System.nanoTime() - connectStart;
+			}
+		};
+	}
+
+	void addDownloadNanos(long nanos) {
+		downloadNanos += nanos;
+	}
+
+	void addSignatureVerificationNanos(long nanos) {
+		signatureVerificationNanos += nanos;
+	}
+
+	void addFileWriteNanos(long nanos) {
+		fileWriteNanos += nanos;
+	}
+
+	void addProvideDiagnosisKeysNanos(long nanos) {
+		provideDiagnosisKeysNanos += nanos;
+	}
+
+	void addCleanupNanos(long nanos) {
+		cleanupNanos += nanos;
+	}
+
+	void setTransferredBytes(long bytesOnWire, long bytesDecoded) {
+		this.bytesOnWire = bytesOnWire;
+		this.bytesDecoded = bytesDecoded;
+	}
+
+	SyncMetrics build(boolean successful) {
+		return new SyncMetrics(successful, toMillis(dnsNanos), toMillis(connectNanos), toMillis(tlsNanos),
+				toMillis(downloadNanos), bytesOnWire, bytesDecoded, toMillis(signatureVerificationNanos),
+				toMillis(fileWriteNanos), toMillis(provideDiagnosisKeysNanos), toMillis(cleanupNanos));
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+}
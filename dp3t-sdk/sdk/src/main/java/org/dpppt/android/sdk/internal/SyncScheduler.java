@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import androidx.work.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.BuildConfig;
+import org.dpppt.android.sdk.internal.logger.Logger;
+
+/**
+ * Schedules the SyncWorker as one-time work for the moment new keys are expected, instead of waking up periodically. The
+ * delay is derived from the last sync call, the Cache-Control/Expires hint of the last bucket response, and is stretched
+ * while the battery is low on a metered network.
+ */
+public class SyncScheduler {
+
+	private static final String TAG = "SyncScheduler";
+	private static final String WORK_NAME = "org.dpppt.android.sdk.internal.SyncWorker.next";
+	private static final String LEGACY_PERIODIC_WORK_NAME = "org.dpppt.android.sdk.internal.SyncWorker";
+
+	static final long SYNC_INTERVAL = BuildConfig.FLAVOR.equals("calibration") ? 5 * 60 * 1000L : 4 * 60 * 60 * 1000L;
+	private static final long MIN_DELAY = 15 * 60 * 1000L;
+	private static final long MAX_DELAY = 12 * 60 * 60 * 1000L;
+	private static final int LOW_BATTERY_PERCENTAGE = 15;
+
+	/**
+	 * Enqueues the next sync unless one is already pending, e.g. when tracing is started or after a reboot.
+	 */
+	public static void startScheduling(Context context) {
+		WorkManager workManager = WorkManager.getInstance(context);
+		workManager.cancelUniqueWork(LEGACY_PERIODIC_WORK_NAME);
+		enqueue(context, ExistingWorkPolicy.KEEP);
+	}
+
+	/**
+	 * Called from a successful SyncWorker run, appends the next run after the current one.
+	 */
+	static void scheduleNextSync(Context context) {
+		enqueue(context, ExistingWorkPolicy.APPEND);
+	}
+
+	private static void enqueue(Context context, ExistingWorkPolicy policy) {
+		long delay = getNextSyncDelay(context, System.currentTimeMillis());
+
+		Constraints constraints = new Constraints.Builder()
+				.setRequiredNetworkType(NetworkType.CONNECTED)
+				.build();
+
+		OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(SyncWorker.class)
+				.setInitialDelay(delay, TimeUnit.MILLISECONDS)
+				.setConstraints(constraints)
+				.build();
+
+		WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, policy, workRequest);
+
+		Logger.d(TAG, "scheduled SyncWorker in " + TimeUnit.MILLISECONDS.toMinutes(delay) + " min");
+	}
+
+	static long getNextSyncDelay(Context context, long now) {
+		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
+		long lastSyncCallTime = appConfigManager.getLastSynCallTime();
+		if (lastSyncCallTime == 0) {
+			return 0;
+		}
+
+		long nextSyncTime = Math.max(lastSyncCallTime + SYNC_INTERVAL, appConfigManager.getKeyBundleExpiresAt());
+		long delay = Math.min(Math.max(nextSyncTime - now, 0), MAX_DELAY);
+
+		if (isBatteryLow(context) && isNetworkMetered(context)) {
+			delay = Math.min(delay + SYNC_INTERVAL, MAX_DELAY);
+		}
+		return Math.max(delay, MIN_DELAY);
+	}
+
+	private static boolean isBatteryLow(Context context) {
+		BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+		if (batteryManager == null || batteryManager.isCharging()) {
+			return false;
+		}
+		return batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) <= LOW_BATTERY_PERCENTAGE;
+	}
+
+	private static boolean isNetworkMetered(Context context) {
+		ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+		return connectivityManager == null || connectivityManager.isActiveNetworkMetered();
+	}
+
+}
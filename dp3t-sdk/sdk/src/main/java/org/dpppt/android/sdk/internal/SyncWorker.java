@@ -13,20 +13,15 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.work.*;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.security.PublicKey;
 import java.security.SecureRandom;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 import com.google.android.gms.nearby.exposurenotification.TemporaryExposureKey;
 
-import org.dpppt.android.sdk.BuildConfig;
 import org.dpppt.android.sdk.DP3T;
+import org.dpppt.android.sdk.SyncMetricsListener;
 import org.dpppt.android.sdk.TracingStatus.ErrorState;
 import org.dpppt.android.sdk.internal.backend.BackendBucketRepository;
 import org.dpppt.android.sdk.internal.backend.StatusCodeException;
@@ -39,42 +34,29 @@ import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.sdk.internal.nearby.GaenStateCache;
 import org.dpppt.android.sdk.internal.nearby.GaenStateHelper;
 import org.dpppt.android.sdk.internal.nearby.GoogleExposureClient;
+import org.dpppt.android.sdk.internal.storage.KeyBundleLedger;
 import org.dpppt.android.sdk.internal.storage.PendingKeyUploadStorage;
 import org.dpppt.android.sdk.internal.storage.models.PendingKey;
 import org.dpppt.android.sdk.models.ApplicationInfo;
 import org.dpppt.android.sdk.models.DayDate;
 import org.dpppt.android.sdk.util.DateUtil;
 
-import okhttp3.ResponseBody;
-import retrofit2.Response;
-
+import static org.dpppt.android.sdk.internal.KeyFileDownloader.KEYFILE_PREFIX;
 import static org.dpppt.android.sdk.internal.util.Base64Util.toBase64;
 
 public class SyncWorker extends Worker {
 
 	private static final String TAG = "SyncWorker";
 	private static final String WORK_TAG = "org.dpppt.android.sdk.internal.SyncWorker";
-	private static final String KEYFILE_PREFIX = "keyfile_";
 
 	protected static final String KEY_BUNDLE_TAG_HEADER = "x-key-bundle-tag";
 
-	private static final long SYNC_INTERVAL = BuildConfig.FLAVOR.equals("calibration") ? 5 * 60 * 1000L : 4 * 60 * 60 * 1000L;
+	private static final int KEY_BUNDLE_LEDGER_KEEP_DAYS = 14;
 
 	private static PublicKey bucketSignaturePublicKey;
 
 	public static void startSyncWorker(Context context) {
-		Constraints constraints = new Constraints.Builder()
-				.setRequiredNetworkType(NetworkType.CONNECTED)
-				.build();
-
-		PeriodicWorkRequest periodicWorkRequest = new PeriodicWorkRequest.Builder(SyncWorker.class, 120, TimeUnit.MINUTES)
-				.setConstraints(constraints)
-				.build();
-
-		WorkManager workManager = WorkManager.getInstance(context);
-		workManager.enqueueUniquePeriodicWork(WORK_TAG, ExistingPeriodicWorkPolicy.KEEP, periodicWorkRequest);
-
-		Logger.d(TAG, "scheduled SyncWorker");
+		SyncScheduler.startScheduling(context);
 	}
 
 	public static void stopSyncWorker(Context context) {
@@ -108,6 +90,7 @@ public class SyncWorker extends Worker {
 			return Result.retry();
 		}
 		Logger.d(TAG, "SyncWorker finished with success");
+		SyncScheduler.scheduleNextSync(context);
 		return Result.success();
 	}
 
@@ -140,7 +123,6 @@ public class SyncWorker extends Worker {
 							return;
 						}
 						Logger.i(TAG, "synced");
-						AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(true);
 					}
 					SyncErrorState.getInstance().setSyncError(null);
 					BroadcastHelper.sendUpdateAndErrorBroadcast(context);
@@ -159,61 +141,122 @@ public class SyncWorker extends Worker {
 			AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
 			ApplicationInfo appConfig = appConfigManager.getAppConfig();
 
+			SyncMetricsListener syncMetricsListener = DP3T.getSyncMetricsListener();
+			SyncMetricsCollector metricsCollector = syncMetricsListener != null ? new SyncMetricsCollector() : null;
+
 			BackendBucketRepository backendBucketRepository =
-					new BackendBucketRepository(context, appConfig.getBucketBaseUrl(), bucketSignaturePublicKey);
+					new BackendBucketRepository(context, appConfig.getBucketBaseUrl(), bucketSignaturePublicKey,
+							metricsCollector != null ? metricsCollector.getEventListener() : null);
+			KeyFileDownloader keyFileDownloader =
+					new KeyFileDownloader(context, backendBucketRepository, bucketSignaturePublicKey, metricsCollector);
 			GoogleExposureClient googleExposureClient = GoogleExposureClient.getInstance(context);
+			KeyBundleLedger keyBundleLedger = KeyBundleLedger.getInstance(context);
+			DayDate oldestLedgerDay = new DayDate(currentTime).subtractDays(KEY_BUNDLE_LEDGER_KEEP_DAYS);
 
-			if (appConfigManager.getLastSynCallTime() <= currentTime - SYNC_INTERVAL) {
+			if (appConfigManager.getLastSynCallTime() <= currentTime - SyncScheduler.SYNC_INTERVAL) {
+				boolean successful = false;
 				try {
-					Logger.d(TAG, "loading exposees");
-					Response<ResponseBody> result =
-							backendBucketRepository.getGaenExposees(appConfigManager.getLastKeyBundleTag());
-
-					if (result.code() != 204) {
-						File file = new File(context.getCacheDir(),
-								KEYFILE_PREFIX + appConfigManager.getLastKeyBundleTag() + ".zip");
-						try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(file))) {
-							byte[] bytesIn = new byte[1024];
-							int read;
-							InputStream bodyStream = result.body().byteStream();
-							while ((read = bodyStream.read(bytesIn)) != -1) {
-								bos.write(bytesIn, 0, read);
+					try {
+						Logger.d(TAG, "loading exposees");
+						String lastKeyBundleTag = appConfigManager.getLastKeyBundleTag();
+						if (lastKeyBundleTag == null) {
+							lastKeyBundleTag = keyBundleLedger.getLastProvidedBundleTag(oldestLedgerDay.getStartOfDayTimestamp());
+							if (lastKeyBundleTag != null) {
+								Logger.i(TAG, "recovered lastKeyBundleTag " + lastKeyBundleTag + " from ledger");
 							}
 						}
+						KeyFileDownloader.DownloadResult result = keyFileDownloader.download(lastKeyBundleTag);
+						Logger.d(TAG, "received %d bytes on wire, %d bytes decoded", backendBucketRepository.getBytesOnWire(),
+								backendBucketRepository.getBytesDecoded());
+
+						if (result.isNotModified()) {
+							Logger.d(TAG, "key bundle not modified");
+							AppConfigManager.Editor editor = appConfigManager.edit()
+									.lastSyncCallTime(currentTime)
+									.lastSyncDate(currentTime)
+									.lastSyncNetworkSuccess(true);
+							setKeyBundleExpiresAt(editor, result);
+							editor.commit();
+							addHistoryEntry(false, false);
+							successful = true;
+							return true;
+						}
 
-						ArrayList<File> fileList = new ArrayList<>();
-						fileList.add(file);
-						Logger.d(TAG,
-								"provideDiagnosisKeys with size " + file.length());
-						appConfigManager.setLastSyncCallTime(currentTime);
-						googleExposureClient.provideDiagnosisKeys(fileList);
-					} else {
-						appConfigManager.setLastSyncCallTime(currentTime);
-					}
-					appConfigManager.setLastKeyBundleTag(result.headers().get(KEY_BUNDLE_TAG_HEADER));
-					appConfigManager.setLastSyncDate(currentTime);
-					addHistoryEntry(false, false);
-				} catch (Exception e) {
-					Logger.e(TAG, "error while syncing new keys", e);
-					long lastSuccessfulSyncTime = appConfigManager.getLastSyncDate();
-					boolean isDelayWithinGracePeriod =
-							lastSuccessfulSyncTime > currentTime - SyncErrorState.getInstance().getSyncErrorGracePeriod();
-					if (isDelayWithinGracePeriod && ErrorHelper.isDelayableSyncError(e)) {
-						addHistoryEntry(false, true);
-					} else {
-						addHistoryEntry(true, false);
-						throw e;
+						File file = result.getKeyFile();
+						if (file != null && keyBundleLedger.isProvided(result.getKeyBundleTag())) {
+							Logger.i(TAG, "key bundle " + result.getKeyBundleTag() + " was already provided, skipping");
+						} else if (file != null) {
+							List<File> fileList = KeyFileSplitter.split(file);
+							Logger.d(TAG, "provideDiagnosisKeys with size %d in %d files", file.length(), fileList.size());
+							// written on its own before providing: the EN framework limits how often keys can be provided, so a
+							// failed provide is not retried before the next sync interval
+							appConfigManager.setLastSyncCallTime(currentTime);
+							long provideStart = System.nanoTime();
+							googleExposureClient.provideDiagnosisKeys(fileList);
+							if (metricsCollector != null) {
+								metricsCollector.addProvideDiagnosisKeysNanos(System.nanoTime() - provideStart);
+							}
+							keyBundleLedger.addProvidedBundle(result.getKeyBundleTag(), file.length(), currentTime);
+						}
+						AppConfigManager.Editor editor = appConfigManager.edit()
+								.lastSyncCallTime(currentTime)
+								.lastKeyBundleTag(result.getKeyBundleTag())
+								.keyBundleValidators(result.getValidators())
+								.lastSyncDate(currentTime)
+								.lastSyncNetworkSuccess(true);
+						setKeyBundleExpiresAt(editor, result);
+						editor.commit();
+						addHistoryEntry(false, false);
+						successful = true;
+					} catch (Exception e) {
+						Logger.e(TAG, "error while syncing new keys", e);
+						long lastSuccessfulSyncTime = appConfigManager.getLastSyncDate();
+						boolean isDelayWithinGracePeriod =
+								lastSuccessfulSyncTime > currentTime - SyncErrorState.getInstance().getSyncErrorGracePeriod();
+						if (isDelayWithinGracePeriod && ErrorHelper.isDelayableSyncError(e)) {
+							addHistoryEntry(false, true);
+							appConfigManager.setLastSyncNetworkSuccess(true);
+						} else {
+							addHistoryEntry(true, false);
+							throw e;
+						}
 					}
-				}
 
-				cleanupOldKeyFiles(context);
+					long cleanupStart = System.nanoTime();
+					cleanupOldKeyFiles(context, keyFileDownloader.getPartialKeyFileName());
+					keyBundleLedger.clearBefore(oldestLedgerDay);
+					if (metricsCollector != null) {
+						metricsCollector.addCleanupNanos(System.nanoTime() - cleanupStart);
+					}
 
-				return true;
+					return true;
+				} finally {
+					if (metricsCollector != null) {
+						reportSyncMetrics(syncMetricsListener, metricsCollector, backendBucketRepository, successful);
+					}
+				}
 			} else {
 				return false;
 			}
 		}
 
+		private void reportSyncMetrics(SyncMetricsListener syncMetricsListener, SyncMetricsCollector metricsCollector,
+				BackendBucketRepository backendBucketRepository, boolean successful) {
+			metricsCollector.setTransferredBytes(backendBucketRepository.getBytesOnWire(),
+					backendBucketRepository.getBytesDecoded());
+			metricsCollector.addSignatureVerificationNanos(backendBucketRepository.getSignatureVerificationNanos());
+			try {
+				syncMetricsListener.onSyncMetrics(metricsCollector.build(successful));
+			} catch (Exception e) {
+				Logger.e(TAG, "SyncMetricsListener failed", e);
+			}
+		}
+
+		private void setKeyBundleExpiresAt(AppConfigManager.Editor editor, KeyFileDownloader.DownloadResult result) {
+			long freshnessLifetime = result.getFreshnessLifetime();
+			editor.keyBundleExpiresAt(freshnessLifetime >= 0 ? currentTime + freshnessLifetime : 0);
+		}
+
 		private void addHistoryEntry(boolean instantError, boolean delayedError) {
 			int base = 'A';
 			String historyStatus =
@@ -224,9 +267,9 @@ public class SyncWorker extends Worker {
 							System.currentTimeMillis()));
 		}
 
-		private void cleanupOldKeyFiles(Context context) {
+		private void cleanupOldKeyFiles(Context context, String partialKeyFileName) {
 			for (File file : context.getCacheDir().listFiles()) {
-				if (file.getName().startsWith(KEYFILE_PREFIX)) {
+				if (file.getName().startsWith(KEYFILE_PREFIX) && !file.getName().equals(partialKeyFileName)) {
 					if (!file.delete()) {
 						Logger.w(TAG, "Unable to delete file " + file.getName());
 					}
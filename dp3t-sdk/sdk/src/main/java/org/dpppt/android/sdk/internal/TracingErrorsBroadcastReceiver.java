@@ -25,6 +25,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.dpppt.android.sdk.DP3T;
 import org.dpppt.android.sdk.R;
 import org.dpppt.android.sdk.TracingStatus;
@@ -46,6 +48,21 @@ public class TracingErrorsBroadcastReceiver extends BroadcastReceiver {
 		if (!DP3T.ACTION_UPDATE_ERRORS.equals(intent.getAction()) || !DP3T.isInitialized())
 			return;
 
+		// the storages may still be opening, so the notification is updated once they are available off the main thread
+		PendingResult pendingResult = goAsync();
+		ListenableFuture<ErrorNotificationStorage> storageFuture = ErrorNotificationStorage.getInstanceAsync(context);
+		storageFuture.addListener(() -> {
+			try {
+				updateNotification(context);
+			} catch (Exception e) {
+				Logger.e(TAG, "updating error notification failed", e);
+			} finally {
+				pendingResult.finish();
+			}
+		}, Runnable::run);
+	}
+
+	private void updateNotification(Context context) {
 		NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 
 		TracingStatus status = DP3T.getStatus(context);
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal;
+
+import org.dpppt.android.sdk.TracingStatus;
+
+/**
+ * Last status built by DP3T.getStatus. It is invalidated by every write that can change the status and expires at the end
+ * of the day, when exposure days can fall out of the retention period.
+ */
+public class TracingStatusCache {
+
+	private static TracingStatus status = null;
+	private static long validUntil = 0;
+	private static int generation = 0;
+
+	public static synchronized TracingStatus get(long now) {
+		if (status == null || now >= validUntil) {
+			return null;
+		}
+		return status;
+	}
+
+	/**
+	 * @return the generation to pass to {@link #put} for a status that is built now
+	 */
+	public static synchronized int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Stores the status unless it was invalidated while the status was built.
+	 */
+	public static synchronized void put(TracingStatus status, int generation, long validUntil) {
+		if (generation != TracingStatusCache.generation) {
+			return;
+		}
+		TracingStatusCache.status = status;
+		TracingStatusCache.validUntil = validUntil;
+	}
+
+	public static synchronized void invalidate() {
+		generation++;
+		status = null;
+	}
+
+}
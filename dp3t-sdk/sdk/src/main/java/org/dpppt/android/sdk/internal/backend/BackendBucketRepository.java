@@ -11,13 +11,16 @@ package org.dpppt.android.sdk.internal.backend;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.security.PublicKey;
 
 import org.dpppt.android.sdk.backend.SignatureException;
 import org.dpppt.android.sdk.backend.SignatureVerificationInterceptor;
 
+import okhttp3.EventListener;
 import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
@@ -27,12 +30,30 @@ public class BackendBucketRepository implements Repository {
 
 	private BucketService bucketService;
 
+	private final ByteCountingInterceptor wireByteCounter = new ByteCountingInterceptor();
+	private final ByteCountingInterceptor decodedByteCounter = new ByteCountingInterceptor();
+	private SignatureVerificationInterceptor signatureVerificationInterceptor;
+
 	public BackendBucketRepository(@NonNull Context context, @NonNull String bucketBaseUrl, @NonNull PublicKey publicKey) {
+		this(context, bucketBaseUrl, publicKey, null);
+	}
+
+	/**
+	 * @param eventListener optional listener for the connection events of the bucket requests
+	 */
+	public BackendBucketRepository(@NonNull Context context, @NonNull String bucketBaseUrl, @NonNull PublicKey publicKey,
+			@Nullable EventListener eventListener) {
 
 		OkHttpClient.Builder clientBuilder = getClientBuilder(context)
+				.addNetworkInterceptor(wireByteCounter)
+				.addInterceptor(decodedByteCounter)
 				.addInterceptor(new TimingVerificationInterceptor());
 		if (publicKey != null) {
-			clientBuilder.addInterceptor(new SignatureVerificationInterceptor(publicKey));
+			signatureVerificationInterceptor = new SignatureVerificationInterceptor(publicKey);
+			clientBuilder.addInterceptor(signatureVerificationInterceptor);
+		}
+		if (eventListener != null) {
+			clientBuilder.eventListener(eventListener);
 		}
 
 		Retrofit bucketRetrofit = new Retrofit.Builder()
@@ -45,13 +66,51 @@ public class BackendBucketRepository implements Repository {
 
 	public Response<ResponseBody> getGaenExposees(String lastKeyBundleTag)
 			throws IOException, StatusCodeException, ServerTimeOffsetException, SignatureException {
+		return getGaenExposees(lastKeyBundleTag, 0, null, null, null);
+	}
+
+	/**
+	 * Requests the bundle starting at the given byte offset. The range is only requested if an If-Range validator of the
+	 * previous partial download is given, the server answers with 206 if the range can be served and with the full
+	 * bundle otherwise. Without a range, the stored validators of the previous response for the same lastKeyBundleTag can be
+	 * given, the server then answers with 304 if nothing changed.
+	 */
+	public Response<ResponseBody> getGaenExposees(String lastKeyBundleTag, long rangeStart, String ifRange,
+			String ifNoneMatch, String ifModifiedSince)
+			throws IOException, StatusCodeException, ServerTimeOffsetException, SignatureException {
+		String range = null;
+		if (rangeStart > 0 && ifRange != null) {
+			range = "bytes=" + rangeStart + "-";
+			ifNoneMatch = null;
+			ifModifiedSince = null;
+		} else {
+			ifRange = null;
+		}
 		Response<ResponseBody> response;
-		response = bucketService.getGaenExposees(lastKeyBundleTag).execute();
-		if (response.isSuccessful()) {
+		response = bucketService.getGaenExposees(lastKeyBundleTag, range, ifRange, ifNoneMatch, ifModifiedSince).execute();
+		if (response.isSuccessful() || response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
 			return response;
 		} else {
 			throw new StatusCodeException(response.raw(), response.errorBody());
 		}
 	}
 
+	/**
+	 * @return the number of response body bytes received over the network by this repository, before decompression
+	 */
+	public long getBytesOnWire() {
+		return wireByteCounter.getByteCount();
+	}
+
+	/**
+	 * @return the number of response body bytes read by this repository, after decompression
+	 */
+	public long getBytesDecoded() {
+		return decodedByteCounter.getByteCount();
+	}
+
+	public long getSignatureVerificationNanos() {
+		return signatureVerificationInterceptor != null ? signatureVerificationInterceptor.getVerificationNanos() : 0;
+	}
+
 }
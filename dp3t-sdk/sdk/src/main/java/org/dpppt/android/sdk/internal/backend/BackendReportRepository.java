@@ -14,6 +14,8 @@ import androidx.annotation.NonNull;
 
 import java.io.IOException;
 
+import org.dpppt.android.sdk.DP3T;
+import org.dpppt.android.sdk.backend.GzipRequestInterceptor;
 import org.dpppt.android.sdk.backend.ResponseCallback;
 import org.dpppt.android.sdk.internal.backend.models.GaenKey;
 import org.dpppt.android.sdk.internal.backend.models.GaenRequest;
@@ -21,6 +23,7 @@ import org.dpppt.android.sdk.internal.backend.models.GaenSecondDay;
 import org.dpppt.android.sdk.models.ExposeeAuthMethod;
 import org.dpppt.android.sdk.models.ExposeeAuthMethodAuthorization;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -32,9 +35,14 @@ public class BackendReportRepository implements Repository {
 	private ReportService reportService;
 
 	public BackendReportRepository(@NonNull Context context, String reportBaseUrl) {
+		OkHttpClient.Builder clientBuilder = getClientBuilder(context);
+		if (DP3T.isReportRequestCompressionEnabled()) {
+			clientBuilder.addInterceptor(new GzipRequestInterceptor());
+		}
+
 		Retrofit reportRetrofit = new Retrofit.Builder()
 				.baseUrl(reportBaseUrl)
-				.client(getClientBuilder(context).build())
+				.client(clientBuilder.build())
 				.addConverterFactory(GsonConverterFactory.create())
 				.build();
 
@@ -12,11 +12,14 @@ package org.dpppt.android.sdk.internal.backend;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Query;
 
 interface BucketService {
 
 	@GET("v2/gaen/exposed")
-	Call<ResponseBody> getGaenExposees(@Query("lastKeyBundleTag") String lastKeyBundleTag);
+	Call<ResponseBody> getGaenExposees(@Query("lastKeyBundleTag") String lastKeyBundleTag, @Header("Range") String range,
+			@Header("If-Range") String ifRange, @Header("If-None-Match") String ifNoneMatch,
+			@Header("If-Modified-Since") String ifModifiedSince);
 
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.backend;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Counts the response body bytes while they are consumed. Registered as network interceptor it counts the bytes on the
+ * wire, registered as application interceptor it counts the decoded bytes after transparent decompression.
+ */
+public class ByteCountingInterceptor implements Interceptor {
+
+	private final AtomicLong byteCount = new AtomicLong();
+
+	@NonNull
+	@Override
+	public Response intercept(@NonNull Chain chain) throws IOException {
+		Response response = chain.proceed(chain.request());
+		ResponseBody body = response.body();
+		if (body == null) {
+			return response;
+		}
+
+		Source countingSource = new ForwardingSource(body.source()) {
+			@Override
+			public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+				long read = super.read(sink, byteCount);
+				if (read > 0) {
+					ByteCountingInterceptor.this.byteCount.addAndGet(read);
+				}
+				return read;
+			}
+		};
+		return response.newBuilder()
+				.body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(countingSource)))
+				.build();
+	}
+
+	public long getByteCount() {
+		return byteCount.get();
+	}
+
+}
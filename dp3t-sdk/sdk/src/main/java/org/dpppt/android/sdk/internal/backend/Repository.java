@@ -17,7 +17,6 @@ import java.net.Proxy;
 import org.dpppt.android.sdk.DP3T;
 import org.dpppt.android.sdk.backend.UserAgentInterceptor;
 
-import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 
 import static org.dpppt.android.sdk.internal.backend.ProxyConfig.DISABLE_SYSTEM_PROXY;
@@ -25,16 +24,12 @@ import static org.dpppt.android.sdk.internal.backend.ProxyConfig.DISABLE_SYSTEM_
 public interface Repository {
 
 	default OkHttpClient.Builder getClientBuilder(@NonNull Context context) {
-		OkHttpClient.Builder okHttpBuilder = new OkHttpClient.Builder();
+		OkHttpClient.Builder okHttpBuilder = SharedHttpClient.getInstance(context).newBuilder();
 
 		if (DP3T.getUserAgent() != null) {
 			okHttpBuilder.addInterceptor(new UserAgentInterceptor(DP3T.getUserAgent()));
 		}
 
-		int cacheSize = 50 * 1024 * 1024; // 50 MB
-		Cache cache = new Cache(context.getCacheDir(), cacheSize);
-		okHttpBuilder.cache(cache);
-
 		okHttpBuilder.certificatePinner(CertificatePinning.getCertificatePinner());
 
 		if (DISABLE_SYSTEM_PROXY) {
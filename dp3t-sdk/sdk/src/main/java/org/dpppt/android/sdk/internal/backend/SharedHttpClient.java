@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.backend;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+
+/**
+ * Holds the process-wide OkHttpClient all repositories derive their clients from with {@link OkHttpClient#newBuilder()}.
+ * The derived clients share the dispatcher, the connection pool and the response cache of this client.
+ */
+public class SharedHttpClient {
+
+	private static final int CACHE_SIZE = 50 * 1024 * 1024; // 50 MB
+
+	private static OkHttpClient instance;
+
+	public static synchronized OkHttpClient getInstance(@NonNull Context context) {
+		if (instance == null) {
+			instance = new OkHttpClient.Builder()
+					.cache(new Cache(context.getApplicationContext().getCacheDir(), CACHE_SIZE))
+					.build();
+		}
+		return instance;
+	}
+
+	private SharedHttpClient() { }
+
+}
@@ -10,6 +10,7 @@
 package org.dpppt.android.sdk.internal.backend;
 
 import org.dpppt.android.sdk.TracingStatus.ErrorState;
+import org.dpppt.android.sdk.internal.TracingStatusCache;
 
 public class SyncErrorState {
 
@@ -30,6 +31,7 @@ public class SyncErrorState {
 
 	public void setSyncError(ErrorState syncError) {
 		this.syncError = syncError;
+		TracingStatusCache.invalidate();
 	}
 
 	public ErrorState getSyncError() {
@@ -15,6 +15,7 @@ import androidx.annotation.NonNull;
 import java.io.IOException;
 import java.util.Date;
 
+import org.dpppt.android.sdk.internal.logger.LogLevel;
 import org.dpppt.android.sdk.internal.logger.Logger;
 
 import okhttp3.Headers;
@@ -47,13 +48,15 @@ public class TimingVerificationInterceptor implements Interceptor {
 		long liveServerTime = serverTime.getTime() + age;
 
 		if (Math.abs(networkResponse.receivedResponseAtMillis() - liveServerTime) > ALLOWED_SERVER_TIME_DIFF) {
-			StringBuilder log = new StringBuilder(1111);
-			log.append(networkResponse.toString()).append("\n");
-			Headers headers = networkResponse.headers();
-			for (int i = 0, count = headers.size(); i < count; i++) {
-				log.append(headers.name(i)).append(": ").append(headers.value(i)).append("\n");
+			if (Logger.isLoggable(LogLevel.ERROR)) {
+				StringBuilder log = new StringBuilder(1111);
+				log.append(networkResponse.toString()).append("\n");
+				Headers headers = networkResponse.headers();
+				for (int i = 0, count = headers.size(); i < count; i++) {
+					log.append(headers.name(i)).append(": ").append(headers.value(i)).append("\n");
+				}
+				Logger.e(TAG, log.toString());
 			}
-			Logger.e(TAG, log.toString());
 
 			throw new ServerTimeOffsetException();
 		}
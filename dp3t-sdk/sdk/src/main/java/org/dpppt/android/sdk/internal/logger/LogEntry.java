@@ -12,18 +12,31 @@ package org.dpppt.android.sdk.internal.logger;
 
 public class LogEntry {
 
+	private final long id;
 	private final long time;
 	private final LogLevel level;
 	private final String tag;
 	private final String message;
 
 	public LogEntry(long time, LogLevel level, String tag, String message) {
+		this(0, time, level, tag, message);
+	}
+
+	public LogEntry(long id, long time, LogLevel level, String tag, String message) {
+		this.id = id;
 		this.time = time;
 		this.level = level;
 		this.tag = tag;
 		this.message = message;
 	}
 
+	/**
+	 * The row id of a stored entry, together with the time the position of the entry for paging.
+	 */
+	public long getId() {
+		return id;
+	}
+
 	public long getTime() {
 		return time;
 	}
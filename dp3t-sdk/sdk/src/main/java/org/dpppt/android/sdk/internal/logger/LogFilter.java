@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.logger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Entries with at least the given level and, if any tags are given, one of these tags.
+ */
+public class LogFilter {
+
+	public static final LogFilter ALL = new LogFilter(LogLevel.DEBUG, Collections.emptySet());
+
+	private final LogLevel minLevel;
+	private final Set<String> tags;
+
+	public LogFilter(LogLevel minLevel, Collection<String> tags) {
+		this.minLevel = minLevel;
+		this.tags = Collections.unmodifiableSet(new HashSet<>(tags));
+	}
+
+	public LogLevel getMinLevel() {
+		return minLevel;
+	}
+
+	public Set<String> getTags() {
+		return tags;
+	}
+
+}
@@ -40,6 +40,15 @@ public enum LogLevel {
 		return null;
 	}
 
+	public static LogLevel byImportance(int importance) {
+		for (LogLevel value : LogLevel.values()) {
+			if (value.getImportance() == importance) {
+				return value;
+			}
+		}
+		return null;
+	}
+
 	public String getKey() {
 		return key;
 	}
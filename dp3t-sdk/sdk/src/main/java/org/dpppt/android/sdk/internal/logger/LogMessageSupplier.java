@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.logger;
+
+/**
+ * Builds a log message only if the level is logged. java.util.function.Supplier needs API level 24.
+ */
+public interface LogMessageSupplier {
+
+	String get();
+
+}
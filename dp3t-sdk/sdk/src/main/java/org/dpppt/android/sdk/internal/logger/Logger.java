@@ -10,11 +10,13 @@
 package org.dpppt.android.sdk.internal.logger;
 
 import android.content.Context;
+import androidx.annotation.Nullable;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 public final class Logger {
 
@@ -28,24 +30,60 @@ public final class Logger {
 
 	private Logger() { }
 
+	/**
+	 * Whether messages of the level are logged. Call sites that build expensive messages in a loop can check this first so
+	 * that nothing is allocated when logging is off.
+	 */
+	public static boolean isLoggable(LogLevel level) {
+		return instance != null && level.getImportance() >= minLevel.getImportance();
+	}
+
 	public static void d(String tag, String message) {
 		log(LogLevel.DEBUG, tag, message);
 	}
 
+	public static void d(String tag, LogMessageSupplier messageSupplier) {
+		log(LogLevel.DEBUG, tag, messageSupplier);
+	}
+
+	public static void d(String tag, String format, Object... args) {
+		log(LogLevel.DEBUG, tag, format, args);
+	}
+
 	public static void i(String tag, String message) {
 		log(LogLevel.INFO, tag, message);
 	}
 
+	public static void i(String tag, LogMessageSupplier messageSupplier) {
+		log(LogLevel.INFO, tag, messageSupplier);
+	}
+
+	public static void i(String tag, String format, Object... args) {
+		log(LogLevel.INFO, tag, format, args);
+	}
+
 	public static void w(String tag, String message) {
 		log(LogLevel.WARNING, tag, message);
 	}
 
+	public static void w(String tag, LogMessageSupplier messageSupplier) {
+		log(LogLevel.WARNING, tag, messageSupplier);
+	}
+
+	public static void w(String tag, String format, Object... args) {
+		log(LogLevel.WARNING, tag, format, args);
+	}
+
 	public static void e(String tag, String message) {
 		log(LogLevel.ERROR, tag, message);
 	}
 
+	public static void e(String tag, LogMessageSupplier messageSupplier) {
+		log(LogLevel.ERROR, tag, messageSupplier);
+	}
+
 	public static void e(String tag, Throwable throwable) {
-		if (instance == null || LogLevel.ERROR.getImportance() < minLevel.getImportance()) {
+		if (!isLoggable(LogLevel.ERROR)) {
 			return;
 		}
 		StringWriter sw = new StringWriter();
@@ -54,7 +92,7 @@ public final class Logger {
 	}
 
 	public static void e(String tag, String message, Throwable throwable) {
-		if (instance == null || LogLevel.ERROR.getImportance() < minLevel.getImportance()) {
+		if (!isLoggable(LogLevel.ERROR)) {
 			return;
 		}
 		StringWriter sw = new StringWriter();
@@ -64,11 +102,23 @@ public final class Logger {
 	}
 
 	private static void log(LogLevel level, String tag, String message) {
-		if (instance != null && level.getImportance() >= minLevel.getImportance()) {
+		if (isLoggable(level)) {
 			instance.log(level, tag, message);
 		}
 	}
 
+	private static void log(LogLevel level, String tag, LogMessageSupplier messageSupplier) {
+		if (isLoggable(level)) {
+			instance.log(level, tag, messageSupplier.get());
+		}
+	}
+
+	private static void log(LogLevel level, String tag, String format, Object[] args) {
+		if (isLoggable(level)) {
+			instance.log(level, tag, String.format(Locale.ENGLISH, format, args));
+		}
+	}
+
 	public static List<LogEntry> getLogs(long sinceTime) {
 		if (instance != null) {
 			return instance.getLogs(sinceTime);
@@ -77,6 +127,42 @@ public final class Logger {
 		}
 	}
 
+	/**
+	 * Up to limit entries matching the filter that come after the given entry, oldest first. Starts with the oldest entry
+	 * if after is null.
+	 */
+	public static List<LogEntry> getLogsAfter(LogFilter filter, @Nullable LogEntry after, int limit) {
+		if (instance != null) {
+			return instance.getLogsAfter(filter, after, limit);
+		} else {
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Up to limit entries matching the filter that come right before the given entry, oldest first. Ends with the newest
+	 * entry if before is null.
+	 */
+	public static List<LogEntry> getLogsBefore(LogFilter filter, @Nullable LogEntry before, int limit) {
+		if (instance != null) {
+			return instance.getLogsBefore(filter, before, limit);
+		} else {
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Up to limit of the newest entries matching the filter whose message contains words starting with all words of the
+	 * query, oldest first.
+	 */
+	public static List<LogEntry> searchLogs(String query, LogFilter filter, int limit) {
+		if (instance != null) {
+			return instance.searchLogs(query, filter, limit);
+		} else {
+			return Collections.emptyList();
+		}
+	}
+
 	public static void clear() {
 		if (instance != null) {
 			instance.clear();
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
+
+import org.dpppt.android.sdk.RiskScorer;
+
+/**
+ * Risk scorer states for a fixed range of days, stored in a flat array indexed by the epoch day (days since 1970-01-01 UTC,
+ * the EN framework reports windows at UTC midnight). The states of all scorers of a day are laid out next to each other, so
+ * several scorers are evaluated in one pass over the windows.
+ */
+class DayRiskScores {
+
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private final RiskScorer[] riskScorers;
+	private final int[] offsets;
+	private final int stateSize;
+	private final int firstEpochDay;
+	private final int numberOfDays;
+	private final double[] states;
+	private final boolean[] changed;
+
+	DayRiskScores(RiskScorer[] riskScorers, int firstEpochDay, int numberOfDays) {
+		this.riskScorers = riskScorers;
+		this.offsets = new int[riskScorers.length];
+		int stateSize = 0;
+		for (int i = 0; i < riskScorers.length; i++) {
+			offsets[i] = stateSize;
+			stateSize += riskScorers[i].getStateSize();
+		}
+		this.stateSize = stateSize;
+		this.firstEpochDay = firstEpochDay;
+		this.numberOfDays = numberOfDays;
+		this.states = new double[numberOfDays * stateSize];
+		this.changed = new boolean[numberOfDays];
+	}
+
+	static int toEpochDay(long timestamp) {
+		return (int) (timestamp / DAY_MILLIS);
+	}
+
+	static long toStartOfDay(int epochDay) {
+		return epochDay * DAY_MILLIS;
+	}
+
+	/**
+	 * Persisted day states are only valid for the scorers with the same signature.
+	 */
+	String getSignature() {
+		StringBuilder signature = new StringBuilder();
+		for (RiskScorer riskScorer : riskScorers) {
+			signature.append(riskScorer.getSignature()).append(';');
+		}
+		return signature.toString();
+	}
+
+	int getStateSize() {
+		return stateSize;
+	}
+
+	/**
+	 * @return false if the window is outside of the day range and was not added
+	 */
+	boolean add(ExposureWindow exposureWindow) {
+		int dayIndex = toEpochDay(exposureWindow.getDateMillisSinceEpoch()) - firstEpochDay;
+		if (dayIndex < 0 || dayIndex >= numberOfDays) {
+			return false;
+		}
+		int dayOffset = dayIndex * stateSize;
+		for (int i = 0; i < riskScorers.length; i++) {
+			riskScorers[i].addExposureWindow(exposureWindow, states, dayOffset + offsets[i]);
+		}
+		changed[dayIndex] = true;
+		return true;
+	}
+
+	/**
+	 * Adds the states of the given day to a persisted day state.
+	 */
+	void addTo(int dayIndex, double[] dayState) {
+		int dayOffset = dayIndex * stateSize;
+		for (int i = 0; i < stateSize; i++) {
+			dayState[i] += states[dayOffset + i];
+		}
+	}
+
+	int getNumberOfRiskScorers() {
+		return riskScorers.length;
+	}
+
+	RiskScorer getRiskScorer(int index) {
+		return riskScorers[index];
+	}
+
+	boolean isExposureLimitReached(int riskScorerIndex, double[] dayState) {
+		return riskScorers[riskScorerIndex].isExposureLimitReached(dayState, offsets[riskScorerIndex]);
+	}
+
+	int getNumberOfDays() {
+		return numberOfDays;
+	}
+
+	int getEpochDay(int dayIndex) {
+		return firstEpochDay + dayIndex;
+	}
+
+	boolean isChanged(int dayIndex) {
+		return changed[dayIndex];
+	}
+
+	void clear() {
+		for (int i = 0; i < states.length; i++) {
+			states[i] = 0;
+		}
+		for (int i = 0; i < changed.length; i++) {
+			changed[i] = false;
+		}
+	}
+
+}
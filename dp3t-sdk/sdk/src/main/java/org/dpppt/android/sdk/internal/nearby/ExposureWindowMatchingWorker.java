@@ -11,35 +11,63 @@ package org.dpppt.android.sdk.internal.nearby;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.concurrent.futures.CallbackToFutureAdapter;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.ListenableWorker;
 import androidx.work.OneTimeWorkRequest;
 import androidx.work.WorkManager;
-import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.google.android.gms.nearby.exposurenotification.ExposureWindow;
 import com.google.android.gms.nearby.exposurenotification.ScanInstance;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import org.dpppt.android.sdk.CandidateRiskScorerListener;
+import org.dpppt.android.sdk.DP3T;
+import org.dpppt.android.sdk.RiskScorer;
 import org.dpppt.android.sdk.internal.AppConfigManager;
+import org.dpppt.android.sdk.internal.logger.LogLevel;
 import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.sdk.internal.storage.ExposureDayStorage;
+import org.dpppt.android.sdk.internal.storage.models.MatchingState;
+import org.dpppt.android.sdk.internal.util.Base64Util;
 import org.dpppt.android.sdk.models.DayDate;
 import org.dpppt.android.sdk.models.ExposureDay;
 
 
-public class ExposureWindowMatchingWorker extends Worker {
+public class ExposureWindowMatchingWorker extends ListenableWorker {
 
 	private static final String TAG = "MatchingWorker";
 
+	static final String WORK_NAME = "org.dpppt.android.sdk.internal.nearby.ExposureWindowMatchingWorker";
+	private static final long MATCHING_DELAY = 10 * 1000L;
+	private static final int MAX_POSTPONED_ATTEMPTS = 5;
+
+	private static final int EXPOSURE_WINDOW_RETENTION_DAYS = 14;
+	private static final int FINGERPRINT_LENGTH = 16;
+
+	/**
+	 * Coalesces bursts of EN state updates into one matching pass. Every trigger replaces the unique work and restarts its
+	 * short delay, so the pass runs once the triggers stop. Replacing only cancels a running pass cooperatively, its matching
+	 * may still be running when the replacement starts. The matching therefore holds a process wide lock, and the replacement
+	 * reads the state that was committed before it.
+	 */
 	public static void startMatchingWorker(Context context) {
-		WorkManager workManager = WorkManager.getInstance(context);
-		workManager.enqueue(OneTimeWorkRequest.from(ExposureWindowMatchingWorker.class));
+		OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(ExposureWindowMatchingWorker.class)
+				.setInitialDelay(MATCHING_DELAY, TimeUnit.MILLISECONDS)
+				.build();
+		WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, workRequest);
 
 		Logger.d(TAG, "scheduled MatchingWorker");
 	}
@@ -48,97 +76,230 @@ public class ExposureWindowMatchingWorker extends Worker {
 		super(context, workerParams);
 	}
 
+	/**
+	 * Does not block a WorkManager thread while waiting for the exposure windows, the matching runs on the background
+	 * executor once they are available.
+	 */
 	@NonNull
 	@Override
-	public ListenableWorker.Result doWork() {
+	public ListenableFuture<Result> startWork() {
+		return CallbackToFutureAdapter.getFuture(completer -> {
+			Context context = getApplicationContext();
+			ListenableFuture<List<ExposureWindow>> exposureWindowsFuture =
+					GoogleExposureClient.getInstance(context).getExposureWindowsAsync();
+			completer.addCancellationListener(() -> exposureWindowsFuture.cancel(false), getBackgroundExecutor());
 
-		Context context = getApplicationContext();
-		List<ExposureWindow> exposureWindows = null;
-		try {
-			exposureWindows = GoogleExposureClient.getInstance(context).getExposureWindows();
-		} catch (Exception e) {
-			Logger.e(TAG, "error getting exposureWindows");
-			return Result.failure();
+			exposureWindowsFuture.addListener(() -> {
+				List<ExposureWindow> exposureWindows;
+				try {
+					exposureWindows = exposureWindowsFuture.get();
+				} catch (Exception e) {
+					Logger.e(TAG, "error getting exposureWindows");
+					completer.set(Result.failure());
+					return;
+				}
+				if (isStopped()) {
+					// replaced by a newer pass, which fetches the exposure windows again
+					completer.set(Result.success());
+					return;
+				}
+				try {
+					boolean canPostpone = getRunAttemptCount() < MAX_POSTPONED_ATTEMPTS;
+					if (!addDaysWhereExposureLimitIsReached(context, exposureWindows, canPostpone)) {
+						completer.set(Result.retry());
+						return;
+					}
+				} catch (RuntimeException e) {
+					// the matching state is only stored together with the exposure days, the retry matches the windows again
+					Logger.e(TAG, "matching failed", e);
+					completer.set(Result.retry());
+					return;
+				}
+				completer.set(Result.success());
+			}, getBackgroundExecutor());
+			return TAG;
+		});
+	}
+
+	/**
+	 * Folds the windows that were not processed by a previous run into the persisted per-day risk scorer states and adds
+	 * the changed days on which the active risk scorer reaches the exposure limit. Candidate risk scorers are evaluated in the
+	 * same pass and only reported. Windows are recognized by a fingerprint of their content; identical windows are counted,
+	 * so a window is only skipped as often as it was already processed.
+	 *
+	 * @return false if the risk scorers set by the app are not available in this process yet, nothing is matched then
+	 */
+	protected static boolean addDaysWhereExposureLimitIsReached(Context context, List<ExposureWindow> exposureWindows) {
+		return addDaysWhereExposureLimitIsReached(context, exposureWindows, true);
+	}
+
+	/**
+	 * Passes run one at a time, so that overlapping passes do not both read and commit the matching state.
+	 *
+	 * @param canPostpone false if matching was postponed for too long already, the risk scorers of this process are used
+	 * and stored then, even if they differ from the ones the app set before
+	 */
+	protected static synchronized boolean addDaysWhereExposureLimitIsReached(Context context,
+			List<ExposureWindow> exposureWindows, boolean canPostpone) {
+		AppConfigManager.Snapshot config = AppConfigManager.getInstance(context).getSnapshot();
+		RiskScorer riskScorer = DP3T.getRiskScorer();
+		List<RiskScorer> candidateRiskScorers = DP3T.getCandidateRiskScorers();
+		String riskScorerSignature = getRiskScorerSignature(riskScorer, candidateRiskScorers);
+		if (config.riskScorerSignature != null && !config.riskScorerSignature.equals(riskScorerSignature)) {
+			if (canPostpone) {
+				// matching with other scorers would discard the state of the stored ones
+				Logger.i(TAG, "risk scorers not set since app start, postponing matching");
+				return false;
+			}
+			// the app no longer sets the stored scorers, exposure evaluation must not be withheld any longer
+			Logger.w(TAG, "risk scorers still not set, matching with the current ones");
+			AppConfigManager.getInstance(context).setRiskScorerSignature(riskScorerSignature);
 		}
 
-		addDaysWhereExposureLimitIsReached(context, exposureWindows);
+		MatchingParameters parameters = MatchingParameters.fromConfig(config);
+		if (riskScorer == null) {
+			riskScorer = parameters.toRiskScorer();
+		}
+		RiskScorer[] riskScorers = new RiskScorer[candidateRiskScorers.size() + 1];
+		riskScorers[0] = riskScorer;
+		for (int i = 0; i < candidateRiskScorers.size(); i++) {
+			riskScorers[i + 1] = candidateRiskScorers.get(i);
+		}
 
-		return Result.success();
-	}
+		int today = DayRiskScores.toEpochDay(System.currentTimeMillis());
+		int firstDay = today - EXPOSURE_WINDOW_RETENTION_DAYS;
+		// one extra day for windows dated tomorrow in UTC
+		DayRiskScores dayRiskScores = new DayRiskScores(riskScorers, firstDay, EXPOSURE_WINDOW_RETENTION_DAYS + 2);
 
-	protected static void addDaysWhereExposureLimitIsReached(Context context, List<ExposureWindow> exposureWindows) {
-		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
-		HashMap<DayDate, int[]> attenuationDurationsInSecondsForDate = new HashMap<>();
-		for (ExposureWindow exposureWindow : exposureWindows) {
+		ExposureDayStorage exposureDayStorage = ExposureDayStorage.getInstance(context);
+		MatchingState matchingState = exposureDayStorage.getMatchingState(dayRiskScores.getSignature());
 
-			DayDate windowDate = new DayDate(exposureWindow.getDateMillisSinceEpoch());
-			Logger.d(TAG, "Received ExposureWindow for " + windowDate.formatAsString() + ": " + exposureWindow.toString());
-			if (!attenuationDurationsInSecondsForDate.containsKey(windowDate)) {
-				attenuationDurationsInSecondsForDate.put(windowDate, new int[] { 0, 0, 0 });
+		boolean debugLoggable = Logger.isLoggable(LogLevel.DEBUG);
+		MessageDigest fingerprintDigest = createFingerprintDigest();
+		HashMap<String, Integer> windowCountsOfRun = new HashMap<>();
+		int newWindows = 0;
+		for (int i = 0, size = exposureWindows.size(); i < size; i++) {
+			ExposureWindow exposureWindow = exposureWindows.get(i);
+			if (debugLoggable) {
+				Logger.d(TAG, "Received ExposureWindow for " +
+						new DayDate(exposureWindow.getDateMillisSinceEpoch()).formatAsString() + ": " + exposureWindow.toString());
 			}
-			int[] attenuationDurationsInSeconds = attenuationDurationsInSecondsForDate.get(windowDate);
-
-			for (ScanInstance scanInstance : exposureWindow.getScanInstances()) {
-				if (scanInstance.getTypicalAttenuationDb() < appConfigManager.getAttenuationThresholdLow()) {
-					attenuationDurationsInSeconds[0] += scanInstance.getSecondsSinceLastScan();
-				} else if (scanInstance.getTypicalAttenuationDb() < appConfigManager.getAttenuationThresholdMedium()) {
-					attenuationDurationsInSeconds[1] += scanInstance.getSecondsSinceLastScan();
-				} else {
-					attenuationDurationsInSeconds[2] += scanInstance.getSecondsSinceLastScan();
-				}
+			String fingerprint = getFingerprint(exposureWindow, fingerprintDigest);
+			Integer previousCount = windowCountsOfRun.get(fingerprint);
+			int windowCount = previousCount != null ? previousCount + 1 : 1;
+			windowCountsOfRun.put(fingerprint, windowCount);
+
+			long startOfDay = DayRiskScores.toStartOfDay(DayRiskScores.toEpochDay(exposureWindow.getDateMillisSinceEpoch()));
+			MatchingState.DayState dayState = matchingState.getDay(startOfDay);
+			if (dayState.getWindowCount(fingerprint) >= windowCount || !dayRiskScores.add(exposureWindow)) {
+				continue;
 			}
+			dayState.setWindowCount(fingerprint, windowCount);
+			newWindows++;
 		}
+		Logger.d(TAG, "Received %d ExposureWindows, %d new", exposureWindows.size(), newWindows);
 
-		List<ExposureDay> exposureDays = getExposureDaysFromAttenuationDurations(context, attenuationDurationsInSecondsForDate);
-		if (!exposureDays.isEmpty()) {
-			ExposureDayStorage.getInstance(context).addExposureDays(context, exposureDays);
+		matchingState.removeDaysBefore(DayRiskScores.toStartOfDay(firstDay));
+		if (newWindows == 0) {
+			return true;
 		}
-	}
-
-	private static List<ExposureDay> getExposureDaysFromAttenuationDurations(Context context,
-			HashMap<DayDate, int[]> attenuationDurationsInSecondsForDate) {
 
+		int maxAgeForExposure = today - parameters.getNumberOfDaysToConsiderForExposure();
+		int stateSize = dayRiskScores.getStateSize();
 		List<ExposureDay> exposureDays = new ArrayList<>();
-		DayDate maxAgeForExposure =
-				new DayDate().subtractDays(AppConfigManager.getInstance(context).getNumberOfDaysToConsiderForExposure());
-
-		for (Map.Entry<DayDate, int[]> dayDateEntry : attenuationDurationsInSecondsForDate.entrySet()) {
-
-			if (dayDateEntry.getKey().isBefore(maxAgeForExposure)) {
-				Logger.d(TAG, "exposure too far in the past on " + dayDateEntry.getKey().formatAsString());
+		for (int dayIndex = 0; dayIndex < dayRiskScores.getNumberOfDays(); dayIndex++) {
+			if (!dayRiskScores.isChanged(dayIndex)) {
 				continue;
 			}
+			int epochDay = dayRiskScores.getEpochDay(dayIndex);
+			long startOfDay = DayRiskScores.toStartOfDay(epochDay);
+			double[] riskScorerState = matchingState.getDay(startOfDay).getRiskScorerState(stateSize);
+			dayRiskScores.addTo(dayIndex, riskScorerState);
 
-			Logger.d(TAG, "Checking exposure limit for " + dayDateEntry.getKey().formatAsString() + ": " + Arrays.toString(dayDateEntry.getValue()));
-			int[] attenuationDurationsInMinutes = convertAttenuationDurationsToMinutes(dayDateEntry.getValue());
-			if (isExposureLimitReached(context, attenuationDurationsInMinutes)) {
-				Logger.d(TAG, "exposure limit reached on " + dayDateEntry.getKey().formatAsString());
-				ExposureDay exposureDay = new ExposureDay(-1, dayDateEntry.getKey(), System.currentTimeMillis());
-				exposureDays.add(exposureDay);
-			} else {
-				Logger.d(TAG, "exposure limit not reached on " + dayDateEntry.getKey().formatAsString());
+			if (epochDay < maxAgeForExposure) {
+				if (debugLoggable) {
+					Logger.d(TAG, "exposure too far in the past on " + new DayDate(startOfDay).formatAsString());
+				}
+				continue;
 			}
+			if (dayRiskScores.isExposureLimitReached(0, riskScorerState)) {
+				DayDate dayDate = new DayDate(startOfDay);
+				if (debugLoggable) {
+					Logger.d(TAG, "exposure limit reached on " + dayDate.formatAsString());
+				}
+				exposureDays.add(new ExposureDay(-1, dayDate, System.currentTimeMillis()));
+			} else if (debugLoggable) {
+				Logger.d(TAG, "exposure limit not reached on " + new DayDate(startOfDay).formatAsString());
+			}
+		}
+		exposureDayStorage.addExposureDays(context, exposureDays, matchingState);
+
+		reportCandidateResults(dayRiskScores, matchingState, maxAgeForExposure);
+		return true;
+	}
+
+	/**
+	 * @return the signature of the risk scorers set by the app, null if only the matching parameters are used
+	 */
+	public static String getRiskScorerSignature(RiskScorer riskScorer, List<RiskScorer> candidateRiskScorers) {
+		if (riskScorer == null && candidateRiskScorers.isEmpty()) {
+			return null;
+		}
+		StringBuilder signature = new StringBuilder();
+		signature.append(riskScorer != null ? riskScorer.getSignature() : "").append(';');
+		for (RiskScorer candidateRiskScorer : candidateRiskScorers) {
+			signature.append(candidateRiskScorer.getSignature()).append(';');
 		}
-		return exposureDays;
+		return signature.toString();
 	}
 
-	protected static int[] convertAttenuationDurationsToMinutes(int[] attenuationDurationsInSeconds) {
-		int[] attenuationDurationsInMinutes = new int[3];
-		for (int i = 0; i < 3; i++) {
-			attenuationDurationsInMinutes[i] = (int) Math.ceil(attenuationDurationsInSeconds[i] / 60.0);
+	private static void reportCandidateResults(DayRiskScores dayRiskScores, MatchingState matchingState, int maxAgeForExposure) {
+		CandidateRiskScorerListener listener = DP3T.getCandidateRiskScorerListener();
+		if (listener == null) {
+			return;
+		}
+		int stateSize = dayRiskScores.getStateSize();
+		for (int i = 1; i < dayRiskScores.getNumberOfRiskScorers(); i++) {
+			List<DayDate> exposureDays = new ArrayList<>();
+			for (Map.Entry<Long, MatchingState.DayState> day : matchingState.getDays().entrySet()) {
+				if (DayRiskScores.toEpochDay(day.getKey()) >= maxAgeForExposure &&
+						dayRiskScores.isExposureLimitReached(i, day.getValue().getRiskScorerState(stateSize))) {
+					exposureDays.add(new DayDate(day.getKey()));
+				}
+			}
+			Collections.sort(exposureDays);
+			listener.onCandidateResult(dayRiskScores.getRiskScorer(i), exposureDays);
 		}
-		return attenuationDurationsInMinutes;
 	}
 
-	protected static boolean isExposureLimitReached(Context context, int[] attenuationDurationsInMinutes) {
-		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
-		return computeExposureDuration(appConfigManager, attenuationDurationsInMinutes) >=
-				appConfigManager.getMinDurationForExposure();
+	private static MessageDigest createFingerprintDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
-	private static double computeExposureDuration(AppConfigManager appConfigManager, int[] attenuationDurationsInMinutes) {
-		return attenuationDurationsInMinutes[0] * appConfigManager.getAttenuationFactorLow() +
-				attenuationDurationsInMinutes[1] * appConfigManager.getAttenuationFactorMedium();
+	/**
+	 * @return a truncated SHA-256 over all fields of the window, each written with a fixed width after the number of scan
+	 * instances, so that distinct windows do not share a fingerprint
+	 */
+	static String getFingerprint(ExposureWindow exposureWindow, MessageDigest digest) {
+		List<ScanInstance> scanInstances = exposureWindow.getScanInstances();
+		int size = scanInstances.size();
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 4 * 4 + size * 3 * 4)
+				.putLong(exposureWindow.getDateMillisSinceEpoch())
+				.putInt(exposureWindow.getReportType())
+				.putInt(exposureWindow.getInfectiousness())
+				.putInt(exposureWindow.getCalibrationConfidence())
+				.putInt(size);
+		for (int i = 0; i < size; i++) {
+			ScanInstance scanInstance = scanInstances.get(i);
+			buffer.putInt(scanInstance.getTypicalAttenuationDb())
+					.putInt(scanInstance.getMinAttenuationDb())
+					.putInt(scanInstance.getSecondsSinceLastScan());
+		}
+		return Base64Util.toBase64(Arrays.copyOf(digest.digest(buffer.array()), FINGERPRINT_LENGTH));
 	}
 
 }
@@ -14,6 +14,7 @@ import androidx.annotation.Nullable;
 
 import org.dpppt.android.sdk.GaenAvailability;
 import org.dpppt.android.sdk.internal.BroadcastHelper;
+import org.dpppt.android.sdk.internal.TracingStatusCache;
 
 public class GaenStateCache {
 
@@ -28,6 +29,7 @@ public class GaenStateCache {
 	public static void setGaenAvailability(GaenAvailability gaenAvailability, Context context) {
 		if (GaenStateCache.gaenAvailability != gaenAvailability) {
 			GaenStateCache.gaenAvailability = gaenAvailability;
+			TracingStatusCache.invalidate();
 			BroadcastHelper.sendUpdateAndErrorBroadcast(context);
 		}
 	}
@@ -42,11 +44,25 @@ public class GaenStateCache {
 	}
 
 	public static void setGaenEnabled(boolean gaenEnabled, Exception exception, Context context) {
+		if (!isSameException(GaenStateCache.apiException, exception)) {
+			TracingStatusCache.invalidate();
+		}
 		GaenStateCache.apiException = exception;
 		if (!Boolean.valueOf(gaenEnabled).equals(GaenStateCache.gaenEnabled)) {
 			GaenStateCache.gaenEnabled = gaenEnabled;
+			TracingStatusCache.invalidate();
 			BroadcastHelper.sendUpdateAndErrorBroadcast(context);
 		}
 	}
 
+	/**
+	 * The exception only ends up in the error code of the status, so a new instance of the same error does not change it.
+	 */
+	private static boolean isSameException(Exception a, Exception b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		return a.getClass() == b.getClass() && String.valueOf(a.getMessage()).equals(String.valueOf(b.getMessage()));
+	}
+
 }
@@ -97,7 +97,7 @@ public class GaenStateHelper {
 		}
 		GoogleExposureClient.getInstance(context).isEnabled()
 				.addOnSuccessListener(enabled -> {
-					Logger.d(TAG, "checkGaenEnabled: enabled=" + enabled);
+					Logger.d(TAG, "checkGaenEnabled: enabled=%b", enabled);
 					publishGaenEnabled(context, callback, enabled, null);
 				})
 				.addOnFailureListener(e -> {
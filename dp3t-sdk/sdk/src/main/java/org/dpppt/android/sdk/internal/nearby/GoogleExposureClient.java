@@ -12,11 +12,16 @@ package org.dpppt.android.sdk.internal.nearby;
 import android.app.Activity;
 import android.content.Context;
 import android.content.IntentSender;
+import androidx.concurrent.futures.CallbackToFutureAdapter;
 import androidx.core.util.Consumer;
 
 import java.io.File;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.nearby.Nearby;
@@ -24,6 +29,7 @@ import com.google.android.gms.nearby.exposurenotification.*;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import org.dpppt.android.sdk.internal.logger.Logger;
 
@@ -31,11 +37,16 @@ public class GoogleExposureClient {
 
 	private static final String TAG = "GoogleExposureClient";
 
-	private static final String EITHER_EXCEPTION_OR_RESULT_MUST_BE_SET = "either exception or result must be set";
+	private static final long DEFAULT_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+	private static final long DEFAULT_PROVIDE_DIAGNOSIS_KEYS_TIMEOUT_MILLIS = 60 * 60 * 1000L;
+
+	private static final ScheduledThreadPoolExecutor TIMEOUT_EXECUTOR = createTimeoutExecutor();
 
 	private static GoogleExposureClient instance;
 
 	private final ExposureNotificationClient exposureNotificationClient;
+	private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private volatile long provideDiagnosisKeysTimeoutMillis = DEFAULT_PROVIDE_DIAGNOSIS_KEYS_TIMEOUT_MILLIS;
 
 	public static synchronized GoogleExposureClient getInstance(Context context) {
 		if (instance == null) {
@@ -49,6 +60,14 @@ public class GoogleExposureClient {
 		return instance;
 	}
 
+	private static ScheduledThreadPoolExecutor createTimeoutExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+		executor.allowCoreThreadTimeOut(true);
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+
 	private GoogleExposureClient(Context context) {
 		exposureNotificationClient = Nearby.getExposureNotificationClient(context);
 	}
@@ -117,52 +136,26 @@ public class GoogleExposureClient {
 	}
 
 	public List<TemporaryExposureKey> getTemporaryExposureKeyHistorySynchronous() throws Exception {
+		return await(getTemporaryExposureKeyHistoryAsync());
+	}
 
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		Object[] results = new Object[] { null };
-
-		exposureNotificationClient.getTemporaryExposureKeyHistory()
-				.addOnSuccessListener(list -> {
-					results[0] = list;
-					countDownLatch.countDown();
-				})
-				.addOnFailureListener(e -> {
-					results[0] = e;
-					countDownLatch.countDown();
-				});
-
-		countDownLatch.await();
-
-		if (results[0] instanceof Exception) {
-			throw (Exception) results[0];
-		} else if (results[0] instanceof List) {
-			return (List<TemporaryExposureKey>) results[0];
-		} else {
-			throw new IllegalStateException(EITHER_EXCEPTION_OR_RESULT_MUST_BE_SET);
-		}
+	public ListenableFuture<List<TemporaryExposureKey>> getTemporaryExposureKeyHistoryAsync() {
+		return toFuture(exposureNotificationClient.getTemporaryExposureKeyHistory(), "getTemporaryExposureKeyHistory");
 	}
 
 	public void provideDiagnosisKeys(List<File> keys) throws Exception {
+		await(provideDiagnosisKeysAsync(keys));
+	}
+
+	public ListenableFuture<Void> provideDiagnosisKeysAsync(List<File> keys) {
 		if (keys == null || keys.isEmpty()) {
-			return;
+			return CallbackToFutureAdapter.getFuture(completer -> completer.set(null));
 		}
 
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		Exception[] exceptions = new Exception[] { null };
-		exposureNotificationClient.provideDiagnosisKeys(new DiagnosisKeyFileProvider(keys))
-				.addOnSuccessListener(nothing -> {
-					Logger.d(TAG, "provideDiagnosisKeys: inserted keys successfully");
-					countDownLatch.countDown();
-				})
-				.addOnFailureListener(e -> {
-					Logger.e(TAG, "provideDiagnosisKeys", e);
-					exceptions[0] = e;
-					countDownLatch.countDown();
-				});
-		countDownLatch.await();
-		if (exceptions[0] != null) {
-			throw exceptions[0];
-		}
+		Task<Void> task = exposureNotificationClient.provideDiagnosisKeys(new DiagnosisKeyFileProvider(keys))
+				.addOnSuccessListener(nothing -> Logger.d(TAG, "provideDiagnosisKeys: inserted keys successfully"))
+				.addOnFailureListener(e -> Logger.e(TAG, "provideDiagnosisKeys", e));
+		return toFuture(task, "provideDiagnosisKeys", provideDiagnosisKeysTimeoutMillis);
 	}
 
 	/**
@@ -177,23 +170,10 @@ public class GoogleExposureClient {
 			throw new IllegalStateException("must call setParams()");
 		}
 
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		Exception[] exceptions = new Exception[] { null };
-		exposureNotificationClient.provideDiagnosisKeys(keys, exposureConfiguration, token)
-				.addOnSuccessListener(nothing -> {
-					Logger.d(TAG, "provideDiagnosisKeys: inserted keys successfully for token " + token);
-					countDownLatch.countDown();
-				})
-				.addOnFailureListener(e -> {
-					Logger.e(TAG, "provideDiagnosisKeys for token " + token, e);
-					exceptions[0] = e;
-					countDownLatch.countDown();
-				});
-		countDownLatch.await();
-
-		if (exceptions[0] != null) {
-			throw exceptions[0];
-		}
+		Task<Void> task = exposureNotificationClient.provideDiagnosisKeys(keys, exposureConfiguration, token)
+				.addOnSuccessListener(nothing -> Logger.d(TAG, "provideDiagnosisKeys: inserted keys successfully for token %s", token))
+				.addOnFailureListener(e -> Logger.e(TAG, "provideDiagnosisKeys for token " + token, e));
+		await(toFuture(task, "provideDiagnosisKeys", provideDiagnosisKeysTimeoutMillis));
 	}
 
 	/**
@@ -201,51 +181,23 @@ public class GoogleExposureClient {
 	 */
 	@Deprecated
 	public ExposureSummary getExposureSummary(String token) throws Exception {
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		Object[] results = new Object[] { null };
-
-		exposureNotificationClient.getExposureSummary(token)
-				.addOnSuccessListener(summary -> {
-					results[0] = summary;
-					countDownLatch.countDown();
-				})
-				.addOnFailureListener(e -> {
-					results[0] = e;
-					countDownLatch.countDown();
-				});
-
-		countDownLatch.await();
+		return await(getExposureSummaryAsync(token));
+	}
 
-		if (results[0] instanceof Exception) {
-			throw (Exception) results[0];
-		} else if (results[0] instanceof ExposureSummary) {
-			return (ExposureSummary) results[0];
-		} else {
-			throw new IllegalStateException(EITHER_EXCEPTION_OR_RESULT_MUST_BE_SET);
-		}
+	/**
+	 * @deprecated
+	 */
+	@Deprecated
+	public ListenableFuture<ExposureSummary> getExposureSummaryAsync(String token) {
+		return toFuture(exposureNotificationClient.getExposureSummary(token), "getExposureSummary");
 	}
 
 	public List<ExposureWindow> getExposureWindows() throws Exception {
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		Object[] results = new Object[] { null };
+		return await(getExposureWindowsAsync());
+	}
 
-		exposureNotificationClient.getExposureWindows()
-				.addOnSuccessListener(list -> {
-					results[0] = list;
-					countDownLatch.countDown();
-				})
-				.addOnFailureListener(e -> {
-					results[0] = e;
-					countDownLatch.countDown();
-				});
-		countDownLatch.await();
-		if (results[0] instanceof Exception) {
-			throw (Exception) results[0];
-		} else if (results[0] instanceof List) {
-			return (List<ExposureWindow>) results[0];
-		} else {
-			throw new IllegalStateException(EITHER_EXCEPTION_OR_RESULT_MUST_BE_SET);
-		}
+	public ListenableFuture<List<ExposureWindow>> getExposureWindowsAsync() {
+		return toFuture(exposureNotificationClient.getExposureWindows(), "getExposureWindows");
 	}
 
 	public void getVersion(OnSuccessListener<Long> onSuccessListener, OnFailureListener onFailureListener) {
@@ -256,25 +208,71 @@ public class GoogleExposureClient {
 	}
 
 	public Integer getCalibrationConfidence() throws Exception {
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		Object[] results = new Object[] { null };
+		return await(getCalibrationConfidenceAsync());
+	}
 
-		exposureNotificationClient.getCalibrationConfidence()
-				.addOnSuccessListener(confidence -> {
-					results[0] = confidence;
-					countDownLatch.countDown();
-				})
-				.addOnFailureListener(e -> {
-					results[0] = e;
-					countDownLatch.countDown();
-				});
-		countDownLatch.await();
-		if (results[0] instanceof Exception) {
-			throw (Exception) results[0];
-		} else if (results[0] instanceof Integer) {
-			return (Integer) results[0];
-		} else {
-			throw new IllegalStateException(EITHER_EXCEPTION_OR_RESULT_MUST_BE_SET);
+	public ListenableFuture<Integer> getCalibrationConfidenceAsync() {
+		return toFuture(exposureNotificationClient.getCalibrationConfidence(), "getCalibrationConfidence");
+	}
+
+	/**
+	 * Sets the time after which the futures of this client fail with a {@link TimeoutException} if Play Services did not
+	 * answer. The synchronous methods use the same timeout. provideDiagnosisKeys has its own timeout, see
+	 * {@link #setProvideDiagnosisKeysTimeout(long, TimeUnit)}.
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		timeoutMillis = unit.toMillis(timeout);
+	}
+
+	/**
+	 * Sets the timeout of provideDiagnosisKeys, one hour by default. The EN framework keeps ingesting the keys after the
+	 * future gave up and the sync then provides the same bundle again, so this is only meant to catch a lost callback
+	 * and is much longer than an ingestion of a large bundle takes.
+	 */
+	public void setProvideDiagnosisKeysTimeout(long timeout, TimeUnit unit) {
+		provideDiagnosisKeysTimeoutMillis = unit.toMillis(timeout);
+	}
+
+	/**
+	 * Completes the returned future with the result of the task, or with a {@link TimeoutException} if the task did not
+	 * complete in time. Cancelling the future only stops waiting for the task, the EN framework has no cancellation.
+	 */
+	private <T> ListenableFuture<T> toFuture(Task<T> task, String operation) {
+		return toFuture(task, operation, timeoutMillis);
+	}
+
+	private <T> ListenableFuture<T> toFuture(Task<T> task, String operation, long timeout) {
+		return CallbackToFutureAdapter.getFuture(completer -> {
+			ScheduledFuture<?> timeoutFuture = TIMEOUT_EXECUTOR.schedule(
+					() -> completer.setException(new TimeoutException(operation + " timed out after " + timeout + "ms")),
+					timeout, TimeUnit.MILLISECONDS);
+			completer.addCancellationListener(() -> timeoutFuture.cancel(false), Runnable::run);
+			task.addOnSuccessListener(result -> {
+				timeoutFuture.cancel(false);
+				completer.set(result);
+			}).addOnFailureListener(e -> {
+				timeoutFuture.cancel(false);
+				completer.setException(e);
+			}).addOnCanceledListener(() -> {
+				timeoutFuture.cancel(false);
+				completer.setCancelled();
+			});
+			return operation;
+		});
+	}
+
+	private static <T> T await(ListenableFuture<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			throw e;
 		}
 	}
 
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.nearby;
+
+import org.dpppt.android.sdk.AttenuationBucketRiskScorer;
+import org.dpppt.android.sdk.RiskScorer;
+import org.dpppt.android.sdk.internal.AppConfigManager;
+
+/**
+ * Snapshot of the matching parameters, read once per matching run instead of once per scan instance.
+ */
+class MatchingParameters {
+
+	private final int attenuationThresholdLow;
+	private final int attenuationThresholdMedium;
+	private final float attenuationFactorLow;
+	private final float attenuationFactorMedium;
+	private final int minDurationForExposure;
+	private final int numberOfDaysToConsiderForExposure;
+
+	MatchingParameters(int attenuationThresholdLow, int attenuationThresholdMedium, float attenuationFactorLow,
+			float attenuationFactorMedium, int minDurationForExposure, int numberOfDaysToConsiderForExposure) {
+		this.attenuationThresholdLow = attenuationThresholdLow;
+		this.attenuationThresholdMedium = attenuationThresholdMedium;
+		this.attenuationFactorLow = attenuationFactorLow;
+		this.attenuationFactorMedium = attenuationFactorMedium;
+		this.minDurationForExposure = minDurationForExposure;
+		this.numberOfDaysToConsiderForExposure = numberOfDaysToConsiderForExposure;
+	}
+
+	static MatchingParameters fromConfig(AppConfigManager.Snapshot config) {
+		return new MatchingParameters(
+				config.attenuationThresholdLow,
+				config.attenuationThresholdMedium,
+				config.attenuationFactorLow,
+				config.attenuationFactorMedium,
+				config.minDurationForExposure,
+				config.numberOfDaysToConsiderForExposure);
+	}
+
+	int getNumberOfDaysToConsiderForExposure() {
+		return numberOfDaysToConsiderForExposure;
+	}
+
+	/**
+	 * The default risk scorer, a weighted sum of the low and medium attenuation bucket.
+	 */
+	RiskScorer toRiskScorer() {
+		return new AttenuationBucketRiskScorer(
+				new int[] { attenuationThresholdLow, attenuationThresholdMedium },
+				new float[] { attenuationFactorLow, attenuationFactorMedium, 0 },
+				minDurationForExposure);
+	}
+
+}
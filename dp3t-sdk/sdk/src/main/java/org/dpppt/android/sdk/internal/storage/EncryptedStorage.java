@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.concurrent.futures.CallbackToFutureAdapter;
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKeys;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.dpppt.android.sdk.internal.logger.Logger;
+
+/**
+ * Shared setup of the encrypted storages. The master key is looked up in the keystore once per process, and the storage
+ * singletons can be created ahead of time on a background thread, as opening them unwraps their keys in the keystore.
+ */
+public class EncryptedStorage {
+
+	private static final String TAG = "EncryptedStorage";
+
+	private static final ExecutorService STORAGE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+	private static String masterKeyAlias = null;
+
+	static synchronized String getMasterKeyAlias() throws GeneralSecurityException, IOException {
+		if (masterKeyAlias == null) {
+			masterKeyAlias = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
+		}
+		return masterKeyAlias;
+	}
+
+	static SharedPreferences createEncryptedSharedPreferences(Context context, String fileName) {
+		try {
+			return EncryptedSharedPreferences.create(fileName,
+					getMasterKeyAlias(),
+					context,
+					EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+					EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
+		} catch (GeneralSecurityException | IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates all storage singletons on a background thread. Callers of getInstance on other threads wait for a creation in
+	 * progress instead of doing it a second time.
+	 */
+	public static void preload(Context context) {
+		Context applicationContext = context.getApplicationContext();
+		STORAGE_EXECUTOR.execute(() -> {
+			long start = System.currentTimeMillis();
+			try {
+				ExposureDayStorage.getInstance(applicationContext);
+				PendingKeyUploadStorage.getInstance(applicationContext);
+				ErrorNotificationStorage.getInstance(applicationContext);
+				Logger.d(TAG, "preloaded storages in " + (System.currentTimeMillis() - start) + " ms");
+			} catch (RuntimeException e) {
+				Logger.e(TAG, "preloading storages failed", e);
+			}
+		});
+	}
+
+	/**
+	 * @return a future completed on the storage thread once the storage is available
+	 */
+	static <T> ListenableFuture<T> getAsync(Callable<T> storageSupplier) {
+		return CallbackToFutureAdapter.getFuture(completer -> {
+			STORAGE_EXECUTOR.execute(() -> {
+				try {
+					completer.set(storageSupplier.call());
+				} catch (Exception e) {
+					completer.setException(e);
+				}
+			});
+			return TAG;
+		});
+	}
+
+}
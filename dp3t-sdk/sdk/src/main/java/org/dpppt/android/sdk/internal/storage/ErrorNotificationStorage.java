@@ -2,16 +2,13 @@ package org.dpppt.android.sdk.internal.storage;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import androidx.security.crypto.EncryptedSharedPreferences;
-import androidx.security.crypto.MasterKeys;
 
-import java.io.IOException;
 import java.lang.reflect.Type;
-import java.security.GeneralSecurityException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.reflect.TypeToken;
 
 import org.dpppt.android.sdk.TracingStatus.ErrorState;
@@ -37,17 +34,12 @@ public class ErrorNotificationStorage {
 		return instance;
 	}
 
+	public static ListenableFuture<ErrorNotificationStorage> getInstanceAsync(Context context) {
+		return EncryptedStorage.getAsync(() -> getInstance(context));
+	}
+
 	private ErrorNotificationStorage(Context context) {
-		try {
-			String KEY_ALIAS = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
-			esp = EncryptedSharedPreferences.create("dp3t_errornotification_store",
-					KEY_ALIAS,
-					context,
-					EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-					EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
-		} catch (GeneralSecurityException | IOException e) {
-			throw new RuntimeException(e);
-		}
+		esp = EncryptedStorage.createEncryptedSharedPreferences(context, "dp3t_errornotification_store");
 	}
 
 	public ActiveNotificationErrors getSavedActiveErrors() {
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts the rows of the exposure day database with keys held in the Android keystore. Payloads are encrypted with
+ * AES-GCM under the master key also used by the encrypted shared preferences. Columns that need a unique index are
+ * replaced by an HMAC-SHA256 under a separate key, so equal values can be found without being stored in the clear.
+ */
+class ExposureDayCipher {
+
+	private static final String ANDROID_KEYSTORE = "AndroidKeyStore";
+	private static final String INDEX_KEY_ALIAS = "dp3t_exposure_day_index_key";
+	private static final String PAYLOAD_TRANSFORMATION = "AES/GCM/NoPadding";
+	private static final int GCM_IV_LENGTH = 12;
+	private static final int GCM_TAG_LENGTH = 128;
+
+	private final SecretKey payloadKey;
+	private final SecretKey indexKey;
+
+	ExposureDayCipher() throws GeneralSecurityException, IOException {
+		String masterKeyAlias = EncryptedStorage.getMasterKeyAlias();
+		KeyStore keyStore = KeyStore.getInstance(ANDROID_KEYSTORE);
+		keyStore.load(null);
+		if (!keyStore.containsAlias(INDEX_KEY_ALIAS)) {
+			KeyGenerator keyGenerator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_HMAC_SHA256, ANDROID_KEYSTORE);
+			keyGenerator.init(new KeyGenParameterSpec.Builder(INDEX_KEY_ALIAS, KeyProperties.PURPOSE_SIGN).build());
+			keyGenerator.generateKey();
+		}
+		payloadKey = (SecretKey) keyStore.getKey(masterKeyAlias, null);
+		indexKey = (SecretKey) keyStore.getKey(INDEX_KEY_ALIAS, null);
+	}
+
+	String getIndexKey(String value) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance(KeyProperties.KEY_ALGORITHM_HMAC_SHA256);
+		mac.init(indexKey);
+		return Base64.encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)), Base64.NO_WRAP);
+	}
+
+	/**
+	 * @return the random IV followed by the ciphertext
+	 */
+	byte[] encrypt(String plaintext) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(PAYLOAD_TRANSFORMATION);
+		cipher.init(Cipher.ENCRYPT_MODE, payloadKey);
+		byte[] iv = cipher.getIV();
+		byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+		byte[] result = Arrays.copyOf(iv, iv.length + ciphertext.length);
+		System.arraycopy(ciphertext, 0, result, iv.length, ciphertext.length);
+		return result;
+	}
+
+	String decrypt(byte[] encrypted) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(PAYLOAD_TRANSFORMATION);
+		cipher.init(Cipher.DECRYPT_MODE, payloadKey, new GCMParameterSpec(GCM_TAG_LENGTH, encrypted, 0, GCM_IV_LENGTH));
+		byte[] plaintext = cipher.doFinal(encrypted, GCM_IV_LENGTH, encrypted.length - GCM_IV_LENGTH);
+		return new String(plaintext, StandardCharsets.UTF_8);
+	}
+
+}
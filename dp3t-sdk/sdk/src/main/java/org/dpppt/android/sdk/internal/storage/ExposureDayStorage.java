@@ -9,39 +9,60 @@
  */
 package org.dpppt.android.sdk.internal.storage;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
-import androidx.security.crypto.EncryptedSharedPreferences;
-import androidx.security.crypto.MasterKeys;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.reflect.TypeToken;
 
 import org.dpppt.android.sdk.internal.AppConfigManager;
 import org.dpppt.android.sdk.internal.BroadcastHelper;
+import org.dpppt.android.sdk.internal.TracingStatusCache;
+import org.dpppt.android.sdk.internal.logger.Logger;
+import org.dpppt.android.sdk.internal.storage.models.MatchingDay;
+import org.dpppt.android.sdk.internal.storage.models.MatchingState;
 import org.dpppt.android.sdk.internal.util.Json;
 import org.dpppt.android.sdk.models.DayDate;
 import org.dpppt.android.sdk.models.ExposureDay;
 
+/**
+ * Exposure days in a SQLite database. The exposed date is only stored as a keyed hash with a unique index and inside the
+ * AES-GCM encrypted payload, the report day and the deleted flag are stored in the clear so that retention and reset are
+ * single statements. The matching state the days were computed from is kept in the same database, one encrypted row per
+ * day, so both are written in one transaction.
+ */
 public class ExposureDayStorage {
 
+	private static final String TAG = "ExposureDayStorage";
+
 	private static final Type EXPOSUREDAY_LIST_TYPE = new TypeToken<LinkedList<ExposureDay>>() { }.getType();
 
+	private static final String LEGACY_PREFS_NAME = "dp3t_exposuredays_store";
 	private static final String PREF_KEY_EEXPOSURE_DAYS = "exposureDays";
 	private static final String PREF_KEY_LAST_ID = "last_id";
+	private static final String LEGACY_MATCHING_PREFS_NAME = "dp3t_matching_store";
 
 	private static ExposureDayStorage instance;
 
-	private SharedPreferences esp;
-	private AppConfigManager appConfigManager;
+	private final ExposureDayDatabaseHelper dbHelper;
+	private final ExposureDayCipher cipher;
+	private final AppConfigManager appConfigManager;
+
+	private List<ExposureDay> cachedExposureDays;
 
 	public static synchronized ExposureDayStorage getInstance(Context context) {
 		if (instance == null) {
@@ -50,90 +71,297 @@ public class ExposureDayStorage {
 		return instance;
 	}
 
+	public static ListenableFuture<ExposureDayStorage> getInstanceAsync(Context context) {
+		return EncryptedStorage.getAsync(() -> getInstance(context));
+	}
+
 	private ExposureDayStorage(Context context) {
 		try {
-			String KEY_ALIAS = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
-			esp = EncryptedSharedPreferences.create("dp3t_exposuredays_store",
-					KEY_ALIAS,
-					context,
-					EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-					EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
-		} catch (GeneralSecurityException | IOException ex) {
-			ex.printStackTrace();
+			cipher = new ExposureDayCipher();
+		} catch (GeneralSecurityException | IOException e) {
+			throw new RuntimeException(e);
 		}
+		dbHelper = new ExposureDayDatabaseHelper(context);
 		appConfigManager = AppConfigManager.getInstance(context);
+		migrateLegacyStorage(context);
+		// the matching state used to be kept in its own preferences, it is rebuilt from the exposure windows instead
+		SharedPreferences legacyMatchingPrefs = context.getSharedPreferences(LEGACY_MATCHING_PREFS_NAME, Context.MODE_PRIVATE);
+		if (!legacyMatchingPrefs.getAll().isEmpty()) {
+			legacyMatchingPrefs.edit().clear().commit();
+		}
 	}
 
-	private List<ExposureDay> getExposureDaysInternal() {
-		List<ExposureDay> list =
-				Json.safeFromJson(esp.getString(PREF_KEY_EEXPOSURE_DAYS, "[]"), EXPOSUREDAY_LIST_TYPE, ArrayList::new);
-
+	private void deleteExpired(SQLiteDatabase db) {
 		DayDate maxAgeForExposureDay = new DayDate().subtractDays(appConfigManager.getNumberOfDaysToKeepExposedDays());
-		Iterator<ExposureDay> iterator = list.iterator();
-		while (iterator.hasNext()) {
-			if (new DayDate(iterator.next().getReportDate()).isBefore(maxAgeForExposureDay)) {
-				iterator.remove();
-			}
-		}
+		db.delete(ExposureDaySpec.TABLE_NAME,
+				ExposureDaySpec.COLUMN_NAME_REPORT_DAY + "<?",
+				new String[] { String.valueOf(maxAgeForExposureDay.getStartOfDayTimestamp()) });
+	}
 
-		Collections.sort(list, (a, b) -> a.getExposedDate().compareTo(b.getExposedDate()));
+	/**
+	 * The decrypted days are cached until the next write. Expired days are removed from the database when days are added,
+	 * until then they are only filtered out here.
+	 */
+	public synchronized List<ExposureDay> getExposureDays() {
+		if (cachedExposureDays == null) {
+			cachedExposureDays = readExposureDays();
+		}
 
+		long maxAgeForExposureDay =
+				new DayDate().subtractDays(appConfigManager.getNumberOfDaysToKeepExposedDays()).getStartOfDayTimestamp();
+		List<ExposureDay> list = new ArrayList<>(cachedExposureDays.size());
+		for (ExposureDay exposureDay : cachedExposureDays) {
+			if (new DayDate(exposureDay.getReportDate()).getStartOfDayTimestamp() >= maxAgeForExposureDay) {
+				list.add(exposureDay);
+			}
+		}
 		return list;
 	}
 
-	public List<ExposureDay> getExposureDays() {
-		List<ExposureDay> list = getExposureDaysInternal();
-		Iterator<ExposureDay> iterator = list.iterator();
-		while (iterator.hasNext()) {
-			if (iterator.next().isDeleted()) {
-				iterator.remove();
+	private List<ExposureDay> readExposureDays() {
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		List<ExposureDay> list = new ArrayList<>();
+		try (Cursor cursor = db.query(ExposureDaySpec.TABLE_NAME,
+				new String[] { ExposureDaySpec._ID, ExposureDaySpec.COLUMN_NAME_PAYLOAD },
+				ExposureDaySpec.COLUMN_NAME_DELETED + "=0",
+				null,
+				null,
+				null,
+				null)) {
+			int colIndId = cursor.getColumnIndex(ExposureDaySpec._ID);
+			int colIndPayload = cursor.getColumnIndex(ExposureDaySpec.COLUMN_NAME_PAYLOAD);
+			while (cursor.moveToNext()) {
+				ExposureDay exposureDay = decryptExposureDay(cursor.getBlob(colIndPayload));
+				if (exposureDay != null) {
+					exposureDay.setId(cursor.getInt(colIndId));
+					list.add(exposureDay);
+				}
 			}
 		}
+
+		Collections.sort(list, (a, b) -> a.getExposedDate().compareTo(b.getExposedDate()));
 		return list;
 	}
 
+	/**
+	 * Days that were already added before, even if they were reset since, are ignored.
+	 *
+	 * @throws RuntimeException if the days could not be encrypted, nothing is stored in that case
+	 */
 	public void addExposureDays(Context context, List<ExposureDay> newExposureDays) {
-		List<ExposureDay> previousExposureDays = getExposureDaysInternal();
-		int id = esp.getInt(PREF_KEY_LAST_ID, 0);
-		for (ExposureDay exposureDay : newExposureDays) {
-			boolean alreadyInserted = false;
-			for (ExposureDay previousExposureDay : previousExposureDays) {
-				if (previousExposureDay.getExposedDate().equals(exposureDay.getExposedDate())) {
-					alreadyInserted = true;
-					break;//exposure day was already added
+		addExposureDays(context, newExposureDays, null);
+	}
+
+	/**
+	 * Adds the exposure days and replaces the stored matching state in one transaction, so either both or none are written.
+	 *
+	 * @throws RuntimeException if the days or the state could not be encrypted, nothing is stored in that case
+	 */
+	public synchronized void addExposureDays(Context context, List<ExposureDay> newExposureDays, MatchingState matchingState) {
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		cachedExposureDays = null;
+		db.beginTransaction();
+		try {
+			deleteExpired(db);
+			for (ExposureDay exposureDay : newExposureDays) {
+				long id = db.insertWithOnConflict(ExposureDaySpec.TABLE_NAME, null, toContentValues(exposureDay),
+						SQLiteDatabase.CONFLICT_IGNORE);
+				if (id != -1) {
+					exposureDay.setId((int) id);
 				}
 			}
-			if (alreadyInserted) {
-				continue;
+			if (matchingState != null) {
+				replaceMatchingState(db, matchingState);
 			}
+			db.setTransactionSuccessful();
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException(e);
+		} finally {
+			db.endTransaction();
+		}
+		if (newExposureDays.isEmpty()) {
+			return;
+		}
+		TracingStatusCache.invalidate();
 
-			id++;
-			exposureDay.setId(id);
-			previousExposureDays.add(exposureDay);
+		BroadcastHelper.sendUpdateBroadcast(context);
+	}
+
+	/**
+	 * @return the stored matching state if it was computed with the given parameters, an empty state otherwise
+	 */
+	public synchronized MatchingState getMatchingState(String parameterSignature) {
+		MatchingState matchingState = new MatchingState(parameterSignature);
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		try (Cursor cursor = db.query(MatchingDaySpec.TABLE_NAME,
+				new String[] { MatchingDaySpec.COLUMN_NAME_PAYLOAD },
+				null,
+				null,
+				null,
+				null,
+				null)) {
+			int colIndPayload = cursor.getColumnIndex(MatchingDaySpec.COLUMN_NAME_PAYLOAD);
+			while (cursor.moveToNext()) {
+				MatchingDay matchingDay = decryptMatchingDay(cursor.getBlob(colIndPayload));
+				if (matchingDay == null || !parameterSignature.equals(matchingDay.getParameterSignature())) {
+					return new MatchingState(parameterSignature);
+				}
+				matchingState.getDays().put(matchingDay.getDay(), matchingDay.getState());
+			}
 		}
+		return matchingState;
+	}
 
-		esp.edit()
-				.putInt(PREF_KEY_LAST_ID, id)
-				.putString(PREF_KEY_EEXPOSURE_DAYS, Json.toJson(previousExposureDays))
-				.apply();
+	private void replaceMatchingState(SQLiteDatabase db, MatchingState matchingState) throws GeneralSecurityException {
+		db.delete(MatchingDaySpec.TABLE_NAME, null, null);
+		for (Map.Entry<Long, MatchingState.DayState> day : matchingState.getDays().entrySet()) {
+			MatchingDay matchingDay = new MatchingDay(matchingState.getParameterSignature(), day.getKey(), day.getValue());
+			ContentValues values = new ContentValues();
+			values.put(MatchingDaySpec.COLUMN_NAME_PAYLOAD, cipher.encrypt(Json.toJson(matchingDay)));
+			db.insert(MatchingDaySpec.TABLE_NAME, null, values);
+		}
+	}
 
-		BroadcastHelper.sendUpdateBroadcast(context);
+	private MatchingDay decryptMatchingDay(byte[] payload) {
+		try {
+			return Json.safeFromJson(cipher.decrypt(payload), MatchingDay.class, () -> null);
+		} catch (GeneralSecurityException e) {
+			Logger.e(TAG, e);
+			return null;
+		}
+	}
+
+	public synchronized void resetExposureDays() {
+		ContentValues values = new ContentValues();
+		values.put(ExposureDaySpec.COLUMN_NAME_DELETED, 1);
+		dbHelper.getWritableDatabase().update(ExposureDaySpec.TABLE_NAME, values, null, null);
+		cachedExposureDays = null;
+		TracingStatusCache.invalidate();
+	}
+
+	public synchronized void clear() {
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.delete(ExposureDaySpec.TABLE_NAME, null, null);
+		db.delete(MatchingDaySpec.TABLE_NAME, null, null);
+		cachedExposureDays = null;
+		TracingStatusCache.invalidate();
+	}
+
+	private ContentValues toContentValues(ExposureDay exposureDay) throws GeneralSecurityException {
+		ExposureDay payload = new ExposureDay(0, exposureDay.getExposedDate(), exposureDay.getReportDate());
+		ContentValues values = new ContentValues();
+		values.put(ExposureDaySpec.COLUMN_NAME_EXPOSED_DATE_KEY,
+				cipher.getIndexKey(exposureDay.getExposedDate().formatAsString()));
+		values.put(ExposureDaySpec.COLUMN_NAME_REPORT_DAY, new DayDate(exposureDay.getReportDate()).getStartOfDayTimestamp());
+		values.put(ExposureDaySpec.COLUMN_NAME_DELETED, exposureDay.isDeleted() ? 1 : 0);
+		values.put(ExposureDaySpec.COLUMN_NAME_PAYLOAD, cipher.encrypt(Json.toJson(payload)));
+		return values;
+	}
+
+	private ExposureDay decryptExposureDay(byte[] payload) {
+		try {
+			return Json.safeFromJson(cipher.decrypt(payload), ExposureDay.class, () -> null);
+		} catch (GeneralSecurityException e) {
+			Logger.e(TAG, e);
+			return null;
+		}
 	}
 
-	public void resetExposureDays() {
-		List<ExposureDay> previousExposureDays = getExposureDaysInternal();
-		for (ExposureDay previousExposureDay : previousExposureDays) {
-			previousExposureDay.setDeleted(true);
+	/**
+	 * Moves the exposure days of the JSON list in the encrypted shared preferences to the database, keeping their ids.
+	 */
+	private void migrateLegacyStorage(Context context) {
+		SharedPreferences legacyPrefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+		if (legacyPrefs.getAll().isEmpty()) {
+			return;
 		}
-		esp.edit()
-				.putString(PREF_KEY_EEXPOSURE_DAYS, Json.toJson(previousExposureDays, EXPOSUREDAY_LIST_TYPE))
-				.apply();
+
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			SharedPreferences esp = EncryptedStorage.createEncryptedSharedPreferences(context, LEGACY_PREFS_NAME);
+			List<ExposureDay> legacyExposureDays =
+					Json.safeFromJson(esp.getString(PREF_KEY_EEXPOSURE_DAYS, "[]"), EXPOSUREDAY_LIST_TYPE, ArrayList::new);
+			for (ExposureDay exposureDay : legacyExposureDays) {
+				ContentValues values = toContentValues(exposureDay);
+				values.put(ExposureDaySpec._ID, exposureDay.getId());
+				db.insertWithOnConflict(ExposureDaySpec.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+			}
+			// new ids continue after the last id ever handed out, not only after the remaining ones
+			int lastId = esp.getInt(PREF_KEY_LAST_ID, 0);
+			db.delete("sqlite_sequence", "name=?", new String[] { ExposureDaySpec.TABLE_NAME });
+			ContentValues sequence = new ContentValues();
+			sequence.put("name", ExposureDaySpec.TABLE_NAME);
+			sequence.put("seq", lastId);
+			db.insert("sqlite_sequence", null, sequence);
+			db.setTransactionSuccessful();
+			Logger.i(TAG, "migrated " + legacyExposureDays.size() + " exposure days");
+		} catch (GeneralSecurityException | RuntimeException e) {
+			Logger.e(TAG, e);
+			return;
+		} finally {
+			db.endTransaction();
+		}
+		legacyPrefs.edit().clear().commit();
+	}
+
+
+	static class ExposureDaySpec implements BaseColumns {
+
+		static final String TABLE_NAME = "exposure_days";
+		static final String INDEX_NAME_REPORT_DAY = "i_report_day";
+		static final String COLUMN_NAME_EXPOSED_DATE_KEY = "exposed_date_key";
+		static final String COLUMN_NAME_REPORT_DAY = "report_day";
+		static final String COLUMN_NAME_DELETED = "deleted";
+		static final String COLUMN_NAME_PAYLOAD = "payload";
+
 	}
 
-	public void clear() {
-		esp.edit()
-				.putString(PREF_KEY_EEXPOSURE_DAYS, Json.toJson(new ArrayList<>(), EXPOSUREDAY_LIST_TYPE))
-				.apply();
+
+	static class MatchingDaySpec implements BaseColumns {
+
+		static final String TABLE_NAME = "matching_days";
+		static final String COLUMN_NAME_PAYLOAD = "payload";
+
+	}
+
+
+	private static class ExposureDayDatabaseHelper extends SQLiteOpenHelper {
+
+		private static final int DATABASE_VERSION = 1;
+		private static final String DATABASE_NAME = "dp3t_exposure_days.db";
+
+		private static final String SQL_CREATE_ENTRIES =
+				"CREATE TABLE " + ExposureDaySpec.TABLE_NAME + " (" +
+						ExposureDaySpec._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+						ExposureDaySpec.COLUMN_NAME_EXPOSED_DATE_KEY + " TEXT NOT NULL UNIQUE," +
+						ExposureDaySpec.COLUMN_NAME_REPORT_DAY + " INTEGER NOT NULL," +
+						ExposureDaySpec.COLUMN_NAME_DELETED + " INTEGER NOT NULL," +
+						ExposureDaySpec.COLUMN_NAME_PAYLOAD + " BLOB NOT NULL)";
+
+		private static final String SQL_CREATE_INDEX_REPORT_DAY =
+				"CREATE INDEX " + ExposureDaySpec.INDEX_NAME_REPORT_DAY + " ON " + ExposureDaySpec.TABLE_NAME + "(" +
+						ExposureDaySpec.COLUMN_NAME_REPORT_DAY + ")";
+
+		private static final String SQL_CREATE_MATCHING_DAYS =
+				"CREATE TABLE " + MatchingDaySpec.TABLE_NAME + " (" +
+						MatchingDaySpec._ID + " INTEGER PRIMARY KEY," +
+						MatchingDaySpec.COLUMN_NAME_PAYLOAD + " BLOB NOT NULL)";
+
+		ExposureDayDatabaseHelper(Context context) {
+			super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		}
+
+		@Override
+		public void onCreate(SQLiteDatabase db) {
+			db.execSQL(SQL_CREATE_ENTRIES);
+			db.execSQL(SQL_CREATE_INDEX_REPORT_DAY);
+			db.execSQL(SQL_CREATE_MATCHING_DAYS);
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) { }
+
 	}
 
 }
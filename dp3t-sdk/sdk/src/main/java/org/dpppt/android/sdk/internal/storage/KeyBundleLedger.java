@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+
+import org.dpppt.android.sdk.models.DayDate;
+
+/**
+ * Keeps track of the key bundles that have been provided to the EN framework, one entry per key bundle tag, grouped by the
+ * day of the tag.
+ * This allows to recover the last key bundle tag if it was lost and to skip bundles that were already provided.
+ */
+public class KeyBundleLedger {
+
+	private static KeyBundleLedger instance = null;
+
+	private final KeyBundleLedgerHelper dbHelper;
+
+	public static synchronized KeyBundleLedger getInstance(Context context) {
+		if (instance == null) {
+			instance = new KeyBundleLedger(context);
+		}
+		return instance;
+	}
+
+	private KeyBundleLedger(Context context) {
+		dbHelper = new KeyBundleLedgerHelper(context);
+	}
+
+	/**
+	 * Records that the bundle with the given tag has been provided. Providing the same tag again replaces its entry.
+	 */
+	public void addProvidedBundle(String keyBundleTag, long size, long providedAt) {
+		if (keyBundleTag == null) {
+			return;
+		}
+		ContentValues values = new ContentValues();
+		values.put(LedgerSpec.COLUMN_NAME_DAY, getDay(keyBundleTag, providedAt).getStartOfDayTimestamp());
+		values.put(LedgerSpec.COLUMN_NAME_BUNDLE_TAG, keyBundleTag);
+		values.put(LedgerSpec.COLUMN_NAME_SIZE, size);
+		values.put(LedgerSpec.COLUMN_NAME_PROVIDED_AT, providedAt);
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.insertWithOnConflict(LedgerSpec.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+	public boolean isProvided(String keyBundleTag) {
+		if (keyBundleTag == null) {
+			return false;
+		}
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		try (Cursor cursor = db.query(LedgerSpec.TABLE_NAME,
+				new String[] { LedgerSpec._ID },
+				LedgerSpec.COLUMN_NAME_BUNDLE_TAG + "=?",
+				new String[] { keyBundleTag },
+				null,
+				null,
+				null,
+				"1")) {
+			return cursor.moveToFirst();
+		}
+	}
+
+	/**
+	 * @return the tag of the most recently provided bundle, or null if no bundle was provided since the given time
+	 */
+	public String getLastProvidedBundleTag(long providedSince) {
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		try (Cursor cursor = db.query(LedgerSpec.TABLE_NAME,
+				new String[] { LedgerSpec.COLUMN_NAME_BUNDLE_TAG },
+				LedgerSpec.COLUMN_NAME_PROVIDED_AT + ">=?",
+				new String[] { String.valueOf(providedSince) },
+				null,
+				null,
+				LedgerSpec.COLUMN_NAME_DAY + " DESC, " + LedgerSpec.COLUMN_NAME_PROVIDED_AT + " DESC",
+				"1")) {
+			if (cursor.moveToFirst()) {
+				return cursor.getString(cursor.getColumnIndex(LedgerSpec.COLUMN_NAME_BUNDLE_TAG));
+			}
+			return null;
+		}
+	}
+
+	public void clearBefore(DayDate day) {
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.delete(LedgerSpec.TABLE_NAME,
+				LedgerSpec.COLUMN_NAME_DAY + "<?",
+				new String[] { String.valueOf(day.getStartOfDayTimestamp()) });
+	}
+
+	public void clear() {
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.execSQL("delete from " + LedgerSpec.TABLE_NAME);
+	}
+
+	private static DayDate getDay(String keyBundleTag, long fallbackTime) {
+		try {
+			return new DayDate(Long.parseLong(keyBundleTag));
+		} catch (NumberFormatException e) {
+			return new DayDate(fallbackTime);
+		}
+	}
+
+
+	public static class LedgerSpec implements BaseColumns {
+
+		public static final String TABLE_NAME = "key_bundle_ledger";
+		static final String COLUMN_NAME_DAY = "day";
+		static final String COLUMN_NAME_BUNDLE_TAG = "bundle_tag";
+		static final String COLUMN_NAME_SIZE = "size";
+		static final String COLUMN_NAME_PROVIDED_AT = "provided_at";
+
+	}
+
+
+	protected static class KeyBundleLedgerHelper extends SQLiteOpenHelper {
+
+		public static final int DATABASE_VERSION = 1;
+		public static final String DATABASE_NAME = "dp3t_key_bundle_ledger.db";
+
+		private static final String SQL_CREATE_ENTRIES =
+				"CREATE TABLE " + LedgerSpec.TABLE_NAME + " (" +
+						LedgerSpec._ID + " INTEGER PRIMARY KEY," +
+						LedgerSpec.COLUMN_NAME_DAY + " INTEGER NOT NULL," +
+						LedgerSpec.COLUMN_NAME_BUNDLE_TAG + " TEXT NOT NULL," +
+						LedgerSpec.COLUMN_NAME_SIZE + " INTEGER NOT NULL," +
+						LedgerSpec.COLUMN_NAME_PROVIDED_AT + " INTEGER NOT NULL," +
+						"UNIQUE (" + LedgerSpec.COLUMN_NAME_DAY + "," + LedgerSpec.COLUMN_NAME_BUNDLE_TAG + "))";
+
+		private static final String SQL_CREATE_INDEX_BUNDLE_TAG =
+				"CREATE INDEX i_bundle_tag ON " + LedgerSpec.TABLE_NAME + " (" + LedgerSpec.COLUMN_NAME_BUNDLE_TAG + ")";
+
+		KeyBundleLedgerHelper(Context context) {
+			super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		}
+
+		public void onCreate(SQLiteDatabase db) {
+			db.execSQL(SQL_CREATE_ENTRIES);
+			db.execSQL(SQL_CREATE_INDEX_BUNDLE_TAG);
+		}
+
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) { }
+
+	}
+
+}
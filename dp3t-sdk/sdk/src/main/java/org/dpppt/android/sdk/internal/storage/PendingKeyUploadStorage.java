@@ -11,16 +11,13 @@ package org.dpppt.android.sdk.internal.storage;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import androidx.security.crypto.EncryptedSharedPreferences;
-import androidx.security.crypto.MasterKeys;
 
-import java.io.IOException;
 import java.lang.reflect.Type;
-import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.reflect.TypeToken;
 
 import org.dpppt.android.sdk.internal.storage.models.PendingKey;
@@ -43,17 +40,12 @@ public class PendingKeyUploadStorage {
 		return instance;
 	}
 
+	public static ListenableFuture<PendingKeyUploadStorage> getInstanceAsync(Context context) {
+		return EncryptedStorage.getAsync(() -> getInstance(context));
+	}
+
 	private PendingKeyUploadStorage(Context context) {
-		try {
-			String KEY_ALIAS = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
-			esp = EncryptedSharedPreferences.create("dp3t_pendingkeyupload_store",
-					KEY_ALIAS,
-					context,
-					EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-					EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
-		} catch (GeneralSecurityException | IOException e) {
-			throw new RuntimeException(e);
-		}
+		esp = EncryptedStorage.createEncryptedSharedPreferences(context, "dp3t_pendingkeyupload_store");
 	}
 
 	private List<PendingKey> getPendingKeys() {
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage.models;
+
+public class KeyBundleValidators {
+
+	private String requestKeyBundleTag;
+	private String keyBundleTag;
+	private String etag;
+	private String lastModified;
+
+	public KeyBundleValidators(String requestKeyBundleTag, String keyBundleTag, String etag, String lastModified) {
+		this.requestKeyBundleTag = requestKeyBundleTag;
+		this.keyBundleTag = keyBundleTag;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	public String getRequestKeyBundleTag() {
+		return requestKeyBundleTag;
+	}
+
+	public String getKeyBundleTag() {
+		return keyBundleTag;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+}
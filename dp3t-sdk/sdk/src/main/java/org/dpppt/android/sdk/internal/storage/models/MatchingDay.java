@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage.models;
+
+/**
+ * One day of a {@link MatchingState}, stored as the encrypted payload of a row. The day is only stored inside the payload,
+ * like the exposed date of the exposure days.
+ */
+public class MatchingDay {
+
+	private String parameterSignature;
+	private long day;
+	private MatchingState.DayState state;
+
+	public MatchingDay(String parameterSignature, long day, MatchingState.DayState state) {
+		this.parameterSignature = parameterSignature;
+		this.day = day;
+		this.state = state;
+	}
+
+	public String getParameterSignature() {
+		return parameterSignature;
+	}
+
+	public long getDay() {
+		return day;
+	}
+
+	public MatchingState.DayState getState() {
+		return state;
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage.models;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Running risk scorer states per day together with the fingerprints of the exposure windows that were already folded into
+ * them. The state is only valid for the risk scorers it was computed with.
+ */
+public class MatchingState {
+
+	private String parameterSignature;
+	private HashMap<Long, DayState> days = new HashMap<>();
+
+	public MatchingState(String parameterSignature) {
+		this.parameterSignature = parameterSignature;
+	}
+
+	public String getParameterSignature() {
+		return parameterSignature;
+	}
+
+	/**
+	 * @return the state of the day starting at the given timestamp, created if it does not exist yet
+	 */
+	public DayState getDay(long startOfDay) {
+		DayState dayState = days.get(startOfDay);
+		if (dayState == null) {
+			dayState = new DayState();
+			days.put(startOfDay, dayState);
+		}
+		return dayState;
+	}
+
+	public Map<Long, DayState> getDays() {
+		return days;
+	}
+
+	public void removeDaysBefore(long startOfDay) {
+		Iterator<Long> iterator = days.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next() < startOfDay) {
+				iterator.remove();
+			}
+		}
+	}
+
+
+	public static class DayState {
+
+		private double[] riskScorerState;
+		private HashMap<String, Integer> windowCounts = new HashMap<>();
+
+		/**
+		 * @return the state of all risk scorers, created if it does not exist yet
+		 */
+		public double[] getRiskScorerState(int stateSize) {
+			if (riskScorerState == null || riskScorerState.length != stateSize) {
+				riskScorerState = new double[stateSize];
+			}
+			return riskScorerState;
+		}
+
+		/**
+		 * @return how many windows with this fingerprint were already folded into the buckets of this day
+		 */
+		public int getWindowCount(String fingerprint) {
+			Integer count = windowCounts.get(fingerprint);
+			return count != null ? count : 0;
+		}
+
+		public void setWindowCount(String fingerprint, int count) {
+			windowCounts.put(fingerprint, count);
+		}
+
+		public Map<String, Integer> getWindowCounts() {
+			return windowCounts;
+		}
+
+	}
+
+}
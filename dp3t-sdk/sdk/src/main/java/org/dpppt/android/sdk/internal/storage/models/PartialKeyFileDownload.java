@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.internal.storage.models;
+
+public class PartialKeyFileDownload {
+
+	private String requestKeyBundleTag;
+	private String keyBundleTag;
+	private String ifRangeValidator;
+	private String signature;
+	private String fileName;
+
+	public PartialKeyFileDownload(String requestKeyBundleTag, String keyBundleTag, String ifRangeValidator, String signature,
+			String fileName) {
+		this.requestKeyBundleTag = requestKeyBundleTag;
+		this.keyBundleTag = keyBundleTag;
+		this.ifRangeValidator = ifRangeValidator;
+		this.signature = signature;
+		this.fileName = fileName;
+	}
+
+	public String getRequestKeyBundleTag() {
+		return requestKeyBundleTag;
+	}
+
+	public String getKeyBundleTag() {
+		return keyBundleTag;
+	}
+
+	public String getIfRangeValidator() {
+		return ifRangeValidator;
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 Ubique Innovation AG <https://www.ubique.ch>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *
+ * SPDX-License-Identifier: MPL-2.0
+ */
+package org.dpppt.android.sdk.models;
+
+/**
+ * Durations and sizes of the stages of one key sync. All durations are in milliseconds, stages that did not run during the
+ * sync (e.g. no new connection, nothing to provide) are reported as 0.
+ */
+public class SyncMetrics {
+
+	private final boolean successful;
+	private final long dnsMillis;
+	private final long connectMillis;
+	private final long tlsMillis;
+	private final long downloadMillis;
+	private final long bytesOnWire;
+	private final long bytesDecoded;
+	private final long signatureVerificationMillis;
+	private final long fileWriteMillis;
+	private final long provideDiagnosisKeysMillis;
+	private final long cleanupMillis;
+
+	public SyncMetrics(boolean successful, long dnsMillis, long connectMillis, long tlsMillis, long downloadMillis,
+			long bytesOnWire, long bytesDecoded, long signatureVerificationMillis, long fileWriteMillis,
+			long provideDiagnosisKeysMillis, long cleanupMillis) {
+		this.successful = successful;
+		this.dnsMillis = dnsMillis;
+		this.connectMillis = connectMillis;
+		this.tlsMillis = tlsMillis;
+		this.downloadMillis = downloadMillis;
+		this.bytesOnWire = bytesOnWire;
+		this.bytesDecoded = bytesDecoded;
+		this.signatureVerificationMillis = signatureVerificationMillis;
+		this.fileWriteMillis = fileWriteMillis;
+		this.provideDiagnosisKeysMillis = provideDiagnosisKeysMillis;
+		this.cleanupMillis = cleanupMillis;
+	}
+
+	public boolean isSuccessful() {
+		return successful;
+	}
+
+	public long getDnsMillis() {
+		return dnsMillis;
+	}
+
+	/**
+	 * @return the time to establish the connection, including the TLS handshake
+	 */
+	public long getConnectMillis() {
+		return connectMillis;
+	}
+
+	public long getTlsMillis() {
+		return tlsMillis;
+	}
+
+	/**
+	 * @return the time from sending the request until the key bundle was completely written to disk
+	 */
+	public long getDownloadMillis() {
+		return downloadMillis;
+	}
+
+	public long getBytesOnWire() {
+		return bytesOnWire;
+	}
+
+	public long getBytesDecoded() {
+		return bytesDecoded;
+	}
+
+	/**
+	 * @return the decoded bytes per second of the download, or 0 if nothing was downloaded
+	 */
+	public long getThroughputBytesPerSecond() {
+		return downloadMillis > 0 ? bytesDecoded * 1000 / downloadMillis : 0;
+	}
+
+	public long getSignatureVerificationMillis() {
+		return signatureVerificationMillis;
+	}
+
+	public long getFileWriteMillis() {
+		return fileWriteMillis;
+	}
+
+	public long getProvideDiagnosisKeysMillis() {
+		return provideDiagnosisKeysMillis;
+	}
+
+	public long getCleanupMillis() {
+		return cleanupMillis;
+	}
+
+}
@@ -27,6 +27,18 @@ class LoggerImpl {
 		return Collections.emptyList();
 	}
 
+	List<LogEntry> getLogsAfter(LogFilter filter, LogEntry after, int limit) {
+		return Collections.emptyList();
+	}
+
+	List<LogEntry> getLogsBefore(LogFilter filter, LogEntry before, int limit) {
+		return Collections.emptyList();
+	}
+
+	List<LogEntry> searchLogs(String query, LogFilter filter, int limit) {
+		return Collections.emptyList();
+	}
+
 	void clear() {
 		// nothing to clear
 	}